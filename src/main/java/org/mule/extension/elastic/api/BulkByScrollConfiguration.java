@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Server side update by query, delete by query and reindex task parameters
+ *
+ */
+public class BulkByScrollConfiguration {
+
+    /**
+     * Handling of the documents changed between the snapshot and the write
+     */
+    public enum Conflicts {
+        ABORT,
+        PROCEED;
+    }
+
+    /**
+     * Number of slices the task is split into. auto lets Elasticsearch pick one slice per shard.
+     */
+    @Parameter
+    @Optional(defaultValue = "auto")
+    @Summary("Number of parallel slices, or auto for one slice per shard")
+    private String slices;
+
+    /**
+     * Throttle in documents per second. -1 disables throttling.
+     */
+    @Parameter
+    @Optional(defaultValue = "-1")
+    @DisplayName("Requests Per Second")
+    @Summary("Throttle in documents per second, -1 disables throttling")
+    private float requestsPerSecond;
+
+    /**
+     * Abort the task or count and skip the documents having a version conflict
+     */
+    @Parameter
+    @Optional(defaultValue = "ABORT")
+    private Conflicts conflicts;
+
+    /**
+     * Number of documents read per scroll batch
+     */
+    @Parameter
+    @Optional(defaultValue = "1000")
+    @DisplayName("Scroll Size")
+    private int scrollSize;
+
+    /**
+     * Refresh the affected shards once the task completed
+     */
+    @Parameter
+    @Optional(defaultValue = "false")
+    private boolean refresh;
+
+    /**
+     * Wait for the task to complete. When false the task id is returned as soon as the task started.
+     */
+    @Parameter
+    @Optional(defaultValue = "true")
+    @DisplayName("Wait For Completion")
+    @Summary("Poll the task until it completed. When false the task id is returned as soon as the task started.")
+    private boolean waitForCompletion;
+
+    /**
+     * Interval (milliseconds) between two task status polls
+     */
+    @Parameter
+    @Optional(defaultValue = "1000")
+    @DisplayName("Poll Interval")
+    @Summary("Interval in milliseconds between two task status polls")
+    private long pollInterval;
+
+    public String getSlices() {
+        return slices;
+    }
+
+    public float getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public Conflicts getConflicts() {
+        return conflicts;
+    }
+
+    public int getScrollSize() {
+        return scrollSize;
+    }
+
+    public boolean isRefresh() {
+        return refresh;
+    }
+
+    public boolean isWaitForCompletion() {
+        return waitForCompletion;
+    }
+
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * @return Request parameters starting the task in the background
+     */
+    public Map<String, String> getRequestParameters() {
+        Map<String, String> params = new HashMap<>();
+        params.put("slices", slices);
+        params.put("requests_per_second", requestsPerSecond > 0 ? Float.toString(requestsPerSecond) : "-1");
+        if (conflicts == Conflicts.PROCEED) {
+            params.put("conflicts", "proceed");
+        }
+        params.put("scroll_size", Integer.toString(scrollSize));
+        params.put("refresh", Boolean.toString(refresh));
+        params.put("wait_for_completion", "false");
+        return params;
+    }
+}
@@ -23,6 +23,15 @@ public class SearchSourceConfiguration {
         DESC;
     }
 
+    /**
+     * Where the returned hit fields are loaded from
+     */
+    public enum FetchMode {
+        SOURCE,
+        DOC_VALUES,
+        STORED_FIELDS;
+    }
+
     /**
      * Retrieve search result from a certain offset
      */
@@ -79,6 +88,20 @@ public class SearchSourceConfiguration {
     @Optional
     private List<String> excludeFields;
 
+    /**
+     * Load the hit fields from the document source, from the columnar doc values or from the stored fields. The source is not loaded in the doc values and stored fields modes.
+     */
+    @Parameter
+    @Optional(defaultValue = "SOURCE")
+    private FetchMode fetchMode;
+
+    /**
+     * List of the doc value or stored fields returned for each hit
+     */
+    @Parameter
+    @Optional
+    private List<String> fetchFields;
+
     /**
      * Enable the profiling to the execution of search queries
      */
@@ -153,6 +176,14 @@ public class SearchSourceConfiguration {
         return excludeFields;
     }
 
+    public FetchMode getFetchMode() {
+        return fetchMode;
+    }
+
+    public List<String> getFetchFields() {
+        return fetchFields;
+    }
+
     public boolean isProfile() {
         return profile;
     }
@@ -0,0 +1,16 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.aggregation;
+
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Base aggregation class implemented by all elastic search aggregation types
+ */
+public interface Aggregation<T extends AggregationBuilder> {
+
+    public T getAggregation();
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.aggregation;
+
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.Placement;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ */
+public class BaseFieldAggregation {
+
+    /**
+     * Name of the aggregation in the search response
+     */
+    @Parameter
+    @Placement(order = 1)
+    private String name;
+
+    /**
+     * Field the aggregation is computed on
+     */
+    @Parameter
+    @Placement(order = 2)
+    private String field;
+
+    public String getName() {
+        return name;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+}
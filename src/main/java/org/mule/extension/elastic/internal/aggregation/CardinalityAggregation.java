@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.aggregation;
+
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.metrics.cardinality.CardinalityAggregationBuilder;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Approximate count of distinct values of a field
+ */
+public class CardinalityAggregation extends BaseFieldAggregation implements Aggregation<CardinalityAggregationBuilder> {
+
+    /**
+     * Count below which the distinct count is expected to be close to accurate
+     */
+    @Parameter
+    @Optional(defaultValue = "3000")
+    private long precisionThreshold;
+
+    public long getPrecisionThreshold() {
+        return precisionThreshold;
+    }
+
+    @Override
+    public CardinalityAggregationBuilder getAggregation() {
+        return AggregationBuilders.cardinality(getName()).field(getField()).precisionThreshold(getPrecisionThreshold());
+    }
+
+}
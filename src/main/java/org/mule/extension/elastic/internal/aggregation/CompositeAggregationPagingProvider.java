@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.aggregation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
+import org.mule.extension.elastic.internal.error.ElasticsearchError;
+import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.mule.runtime.extension.api.runtime.streaming.PagingProvider;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Streams every bucket of a composite aggregation, requesting the next page with the after key of the previous one. The response is read through the low level client
+ *         so the buckets are returned as plain maps without building the typed aggregation objects.
+ */
+public class CompositeAggregationPagingProvider implements PagingProvider<ElasticsearchConnection, Map<String, Object>> {
+
+    private final String resource;
+    private final SearchSourceBuilder searchSourceBuilder;
+    private final CompositeAggregationBuilder compositeAggregation;
+    private final int pageSize;
+    private Map<String, Object> afterKey;
+    private boolean exhausted;
+
+    public CompositeAggregationPagingProvider(String resource, SearchSourceBuilder searchSourceBuilder, CompositeAggregationBuilder compositeAggregation, int pageSize) {
+        this.resource = resource;
+        this.compositeAggregation = compositeAggregation.size(pageSize);
+        this.searchSourceBuilder = searchSourceBuilder.size(0).aggregation(compositeAggregation);
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> getPage(ElasticsearchConnection connection) {
+        if (exhausted) {
+            return Collections.emptyList();
+        }
+        if (afterKey != null) {
+            compositeAggregation.aggregateAfter(afterKey);
+        }
+
+        try {
+            Response response = connection.getElasticsearchConnection().getLowLevelClient().performRequest(HttpGet.METHOD_NAME, resource, Collections.emptyMap(),
+                    new NStringEntity(searchSourceBuilder.toString(), ContentType.APPLICATION_JSON));
+            Map<String, Object> aggregations = (Map<String, Object>) ElasticsearchUtils.responseToMap(response).get("aggregations");
+            Map<String, Object> composite = (Map<String, Object>) aggregations.get(compositeAggregation.getName());
+            List<Map<String, Object>> buckets = (List<Map<String, Object>>) composite.get("buckets");
+
+            if (buckets.isEmpty()) {
+                exhausted = true;
+                return buckets;
+            }
+            // after_key is only returned by Elasticsearch 6.3 and later, the key of the last bucket is equivalent
+            afterKey = composite.containsKey("after_key") ? (Map<String, Object>) composite.get("after_key")
+                    : (Map<String, Object>) buckets.get(buckets.size() - 1).get("key");
+            exhausted = buckets.size() < pageSize;
+            return buckets;
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    @Override
+    public java.util.Optional<Integer> getTotalResults(ElasticsearchConnection connection) {
+        return java.util.Optional.empty();
+    }
+
+    @Override
+    public void close(ElasticsearchConnection connection) {
+        // no server side context to release
+    }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.aggregation;
+
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeValuesSourceBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.DateHistogramValuesSourceBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.TermsValuesSourceBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         A value source of the composite aggregation key
+ */
+public class CompositeValuesSource extends BaseFieldAggregation {
+
+    public enum SourceType {
+        TERMS,
+        DATE_HISTOGRAM
+    }
+
+    /**
+     * Type of the value source
+     */
+    @Parameter
+    @Optional(defaultValue = "TERMS")
+    private SourceType sourceType;
+
+    /**
+     * Bucket interval of a date histogram value source, for example 1h or 1d
+     */
+    @Parameter
+    @Optional
+    private String interval;
+
+    public SourceType getSourceType() {
+        return sourceType;
+    }
+
+    public String getInterval() {
+        return interval;
+    }
+
+    public CompositeValuesSourceBuilder<?> getValuesSource() {
+        if (getSourceType() == SourceType.DATE_HISTOGRAM) {
+            return new DateHistogramValuesSourceBuilder(getName()).field(getField()).dateHistogramInterval(new DateHistogramInterval(getInterval()));
+        }
+        return new TermsValuesSourceBuilder(getName()).field(getField());
+    }
+
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.aggregation;
+
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.Placement;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ */
+public class DateHistogramAggregation extends BaseFieldAggregation implements Aggregation<DateHistogramAggregationBuilder> {
+
+    /**
+     * Bucket interval, for example 1h, 1d, 1w or 1M
+     */
+    @Parameter
+    @Placement(order = 3)
+    private String interval;
+
+    /**
+     * Date format of the bucket keys
+     */
+    @Parameter
+    @Optional
+    private String format;
+
+    /**
+     * Minimum number of documents for a bucket to be returned
+     */
+    @Parameter
+    @Optional(defaultValue = "0")
+    private long minDocCount;
+
+    public String getInterval() {
+        return interval;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public long getMinDocCount() {
+        return minDocCount;
+    }
+
+    @Override
+    public DateHistogramAggregationBuilder getAggregation() {
+        DateHistogramAggregationBuilder dateHistogram = AggregationBuilders.dateHistogram(getName())
+                .field(getField())
+                .dateHistogramInterval(new DateHistogramInterval(getInterval()))
+                .minDocCount(getMinDocCount());
+
+        if (getFormat() != null) {
+            dateHistogram.format(getFormat());
+        }
+
+        return dateHistogram;
+    }
+
+}
@@ -0,0 +1,21 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.aggregation;
+
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.metrics.stats.StatsAggregationBuilder;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Computes min, max, sum, count and avg of a numeric field
+ */
+public class StatsAggregation extends BaseFieldAggregation implements Aggregation<StatsAggregationBuilder> {
+
+    @Override
+    public StatsAggregationBuilder getAggregation() {
+        return AggregationBuilders.stats(getName()).field(getField());
+    }
+
+}
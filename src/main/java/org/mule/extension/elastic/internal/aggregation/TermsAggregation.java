@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.aggregation;
+
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ */
+public class TermsAggregation extends BaseFieldAggregation implements Aggregation<TermsAggregationBuilder> {
+
+    /**
+     * Number of term buckets to return
+     */
+    @Parameter
+    @Optional(defaultValue = "10")
+    private int size;
+
+    /**
+     * Minimum number of documents for a term bucket to be returned
+     */
+    @Parameter
+    @Optional(defaultValue = "1")
+    private long minDocCount;
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getMinDocCount() {
+        return minDocCount;
+    }
+
+    @Override
+    public TermsAggregationBuilder getAggregation() {
+        return AggregationBuilders.terms(getName()).field(getField()).size(getSize()).minDocCount(getMinDocCount());
+    }
+
+}
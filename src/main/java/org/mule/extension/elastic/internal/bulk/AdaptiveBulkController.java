@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.bulk;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mule.extension.elastic.internal.connection.provider.configuration.AdaptiveBulkConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Chooses the bulk request size and concurrency from the observed bulk latency, server took time and rejections. Both grow additively while the bulk requests are
+ *         fast and accepted, and are halved on a 429 rejection or a server took time above the target (AIMD). When only the client latency is above the target, the
+ *         cluster processed the request in time and the rest was spent on the network or waiting for a connection, so the concurrency is halved first and the size is
+ *         only halved once a single request is in flight. A decrease is applied at most once per target latency, so the responses of the requests already in flight do
+ *         not halve the size again.
+ */
+public class AdaptiveBulkController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveBulkController.class);
+
+    private static final double SMOOTHING = 0.2;
+    private static final int CONCURRENCY_INCREASE_INTERVAL = 8;
+
+    private final int minBytes;
+    private final int maxBytes;
+    private final int maxConcurrency;
+    private final long targetLatency;
+
+    private int chunkBytes;
+    private int concurrency = 1;
+    private long lastDecrease;
+    private int successesSinceIncrease;
+    private double latency;
+    private double took;
+    private double rejectionRate;
+    private long requests;
+    private long rejections;
+
+    public AdaptiveBulkController(AdaptiveBulkConfiguration configuration) {
+        this.minBytes = configuration.getMinBulkSize() * 1024;
+        this.maxBytes = Math.max(minBytes, configuration.getMaxBulkSize() * 1024);
+        this.maxConcurrency = Math.max(1, configuration.getMaxBulkConcurrency());
+        this.targetLatency = configuration.getTargetBulkLatency();
+        this.chunkBytes = minBytes;
+    }
+
+    public synchronized int getChunkBytes() {
+        return chunkBytes;
+    }
+
+    public synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Record a bulk response
+     * 
+     * @param latencyMillis
+     *            Client measured latency
+     * @param tookMillis
+     *            Server reported took time
+     * @param rejectedItems
+     *            Number of items rejected with 429
+     * @param items
+     *            Number of items of the request
+     */
+    public synchronized void onResponse(long latencyMillis, long tookMillis, int rejectedItems, int items) {
+        requests++;
+        latency = smooth(latency, latencyMillis);
+        took = smooth(took, tookMillis);
+        rejectionRate = smooth(rejectionRate, items > 0 ? (double) rejectedItems / items : 0);
+
+        if (rejectedItems > 0 || tookMillis > targetLatency) {
+            if (rejectedItems > 0) {
+                rejections++;
+            }
+            decrease(true);
+        } else if (latencyMillis > targetLatency) {
+            // the cluster was not the bottleneck, fewer requests in flight wait less for the network and the connections
+            decrease(concurrency == 1);
+        } else {
+            increase(latencyMillis);
+        }
+    }
+
+    /**
+     * Record a bulk request rejected as a whole
+     */
+    public synchronized void onRejection() {
+        requests++;
+        rejections++;
+        rejectionRate = smooth(rejectionRate, 1);
+        decrease(true);
+    }
+
+    private double smooth(double average, double sample) {
+        return requests == 1 ? sample : average + SMOOTHING * (sample - average);
+    }
+
+    private void increase(long latencyMillis) {
+        chunkBytes = Math.min(maxBytes, chunkBytes + minBytes);
+        successesSinceIncrease++;
+        // more parallel requests only while there is a clear latency headroom
+        if (successesSinceIncrease >= CONCURRENCY_INCREASE_INTERVAL && latencyMillis < targetLatency / 2 && concurrency < maxConcurrency) {
+            concurrency++;
+            successesSinceIncrease = 0;
+        }
+    }
+
+    private void decrease(boolean size) {
+        long now = System.currentTimeMillis();
+        if (now - lastDecrease < targetLatency) {
+            return;
+        }
+        lastDecrease = now;
+        successesSinceIncrease = 0;
+        if (size) {
+            chunkBytes = Math.max(minBytes, chunkBytes / 2);
+        }
+        concurrency = Math.max(1, concurrency / 2);
+        logger.debug("Reduced bulk size to " + chunkBytes + " bytes and concurrency to " + concurrency);
+    }
+
+    /**
+     * @return The chosen size and concurrency and the smoothed latency, took time and rejection rate
+     */
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("bulkBytes", chunkBytes);
+        status.put("concurrency", concurrency);
+        status.put("latencyMillis", Math.round(latency));
+        status.put("tookMillis", Math.round(took));
+        status.put("rejectionRate", rejectionRate);
+        status.put("requests", requests);
+        status.put("rejections", rejections);
+        return status;
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.bulk;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Pool of the byte buffers bulk chunks are serialized into, shared by the bulk operations of a connection so that the chunk buffers are not reallocated per
+ *         request.
+ */
+public class BulkBufferPool {
+
+    private static final int MAX_POOLED = 8;
+
+    /**
+     * Growable byte buffer exposing its backing array, so a chunk can be sent without copying it
+     */
+    public static class Buffer extends ByteArrayOutputStream {
+
+        Buffer(int capacity) {
+            super(capacity);
+        }
+
+        public byte[] array() {
+            return buf;
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
+    private final BlockingQueue<Buffer> buffers = new ArrayBlockingQueue<>(MAX_POOLED);
+
+    /**
+     * @param capacity
+     *            Expected chunk size in bytes
+     * @return An empty buffer of at least the given capacity
+     */
+    public Buffer acquire(int capacity) {
+        Buffer buffer;
+        while ((buffer = buffers.poll()) != null) {
+            if (buffer.capacity() >= capacity && buffer.capacity() <= capacity * 4L) {
+                buffer.reset();
+                return buffer;
+            }
+            // buffers sized for a very different chunk size are dropped
+        }
+        return new Buffer(capacity);
+    }
+
+    /**
+     * Return a buffer to the pool. The buffer must not be used afterwards.
+     */
+    public void release(Buffer buffer) {
+        buffers.offer(buffer);
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.bulk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.VersionType;
+import org.mule.extension.elastic.internal.connection.provider.configuration.DeleteBatchingConfiguration;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Gathers the deletes of concurrent callers and sends them as one bulk request once the batch is full or the batch window elapsed. Each caller gets the bulk item
+ *         result of its own delete.
+ */
+public class DeleteBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeleteBatcher.class);
+
+    private static final byte NEWLINE = '\n';
+    private static final long REQUEST_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private final RestClient lowLevelClient;
+    private final long window;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+
+    private List<Delete> batch = new ArrayList<>();
+    private boolean flushScheduled;
+
+    public DeleteBatcher(RestClient lowLevelClient, DeleteBatchingConfiguration configuration, ScheduledExecutorService scheduler) {
+        this.lowLevelClient = lowLevelClient;
+        this.scheduler = scheduler;
+        this.window = Math.max(1, configuration.getDeleteBatchWindow());
+        this.maxBatchSize = Math.max(1, configuration.getMaxDeleteBatchSize());
+    }
+
+    /**
+     * A delete waiting to be sent
+     */
+    private static class Delete {
+
+        private final String index;
+        private final String type;
+        private final String id;
+        private final String routing;
+        private final String parent;
+        private final long version;
+        private final VersionType versionType;
+        private final CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+
+        Delete(String index, String type, String id, String routing, String parent, long version, VersionType versionType) {
+            this.index = index;
+            this.type = type;
+            this.id = id;
+            this.routing = routing;
+            this.parent = parent;
+            this.version = version;
+            this.versionType = versionType;
+        }
+    }
+
+    /**
+     * Add a delete to the current batch
+     *
+     * @param index
+     *            Index name
+     * @param type
+     *            Type name
+     * @param id
+     *            Document id
+     * @param routing
+     *            Routing value, or null
+     * @param parent
+     *            Parent id, or null
+     * @param version
+     *            Expected version, or 0
+     * @param versionType
+     *            Version type, or null
+     * @return The bulk item result of the delete, completed once the batch was sent
+     */
+    public CompletableFuture<Map<String, Object>> delete(String index, String type, String id, String routing, String parent, long version, VersionType versionType) {
+        Delete delete = new Delete(index, type, id, routing, parent, version, versionType);
+        boolean full;
+        synchronized (this) {
+            batch.add(delete);
+            full = batch.size() >= maxBatchSize;
+            if (!full && !flushScheduled) {
+                try {
+                    scheduler.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+                    flushScheduled = true;
+                } catch (RejectedExecutionException e) {
+                    // the connection is closing, the batch is sent right away
+                    full = true;
+                }
+            }
+        }
+        if (full) {
+            flush();
+        }
+        return delete.result;
+    }
+
+    /**
+     * @return The longest time a caller waits for the result of its delete: the batch window and the timeout of the bulk request
+     */
+    public long getMaxWait() {
+        return window + REQUEST_TIMEOUT;
+    }
+
+    /**
+     * Send the gathered deletes in one bulk request
+     */
+    public void flush() {
+        List<Delete> sent;
+        synchronized (this) {
+            flushScheduled = false;
+            if (batch.isEmpty()) {
+                return;
+            }
+            sent = batch;
+            batch = new ArrayList<>();
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            for (Delete delete : sent) {
+                writeAction(body, delete);
+            }
+        } catch (IOException e) {
+            fail(sent, e);
+            return;
+        }
+
+        lowLevelClient.performRequestAsync(HttpPost.METHOD_NAME, "/_bulk", Collections.emptyMap(), new NByteArrayEntity(body.toByteArray(), ContentType.APPLICATION_JSON),
+                new ResponseListener() {
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public void onSuccess(Response response) {
+                        try {
+                            List<Object> items = (List<Object>) ElasticsearchUtils.responseToMap(response).get("items");
+                            for (int i = 0; i < sent.size(); i++) {
+                                sent.get(i).result.complete((Map<String, Object>) ((Map<String, Object>) items.get(i)).get("delete"));
+                            }
+                            logger.debug("Sent a batch of " + sent.size() + " deletes");
+                        } catch (Exception e) {
+                            fail(sent, e);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        fail(sent, e);
+                    }
+                });
+    }
+
+    private static void writeAction(ByteArrayOutputStream body, Delete delete) throws IOException {
+        try (XContentBuilder action = XContentFactory.jsonBuilder(body)) {
+            action.startObject().startObject("delete").field("_index", delete.index).field("_type", delete.type).field("_id", delete.id);
+            if (delete.routing != null) {
+                action.field("_routing", delete.routing);
+            }
+            if (delete.parent != null) {
+                action.field("parent", delete.parent);
+            }
+            if (delete.version != 0) {
+                action.field("version", delete.version);
+            }
+            if (delete.versionType != null) {
+                action.field("version_type", delete.versionType.name().toLowerCase());
+            }
+            action.endObject().endObject();
+        }
+        body.write(NEWLINE);
+    }
+
+    private static void fail(List<Delete> deletes, Exception e) {
+        logger.warn("Batched delete request failed: " + e.getMessage());
+        for (Delete delete : deletes) {
+            delete.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Send the gathered deletes
+     */
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.bulk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.mule.runtime.api.streaming.bytes.CursorStreamProvider;
+import org.mule.runtime.api.streaming.object.CursorIteratorProvider;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Reads the records of a bulk write one at a time. The records can be a collection, an iterator such as the output of a paged or streaming operation, or a JSON
+ *         array stream. A streaming input is never materialized: the iterator is consumed as the records are written and a JSON array is parsed record by record.
+ */
+public class DocumentStream implements Iterator<Map<String, Object>>, Closeable {
+
+    private final Iterator<?> records;
+    private final XContentParser parser;
+    private final Closeable cursor;
+    private Map<String, Object> next;
+
+    /**
+     * @param documents
+     *            Records to read: an iterable, an iterator, an input stream holding a JSON array, or a repeatable cursor provider of one of them
+     * @throws IOException
+     *             If the JSON array cannot be opened
+     */
+    public DocumentStream(Object documents) throws IOException {
+        if (documents instanceof CursorIteratorProvider) {
+            documents = ((CursorIteratorProvider) documents).openCursor();
+        } else if (documents instanceof CursorStreamProvider) {
+            documents = ((CursorStreamProvider) documents).openCursor();
+        }
+        this.cursor = documents instanceof Closeable ? (Closeable) documents : null;
+        if (documents instanceof InputStream) {
+            this.records = null;
+            this.parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY, (InputStream) documents);
+            if (parser.nextToken() != XContentParser.Token.START_ARRAY) {
+                close();
+                throw new IllegalArgumentException("The documents must be a JSON array");
+            }
+        } else if (documents instanceof Iterator) {
+            this.records = (Iterator<?>) documents;
+            this.parser = null;
+        } else if (documents instanceof Iterable) {
+            this.records = ((Iterable<?>) documents).iterator();
+            this.parser = null;
+        } else if (documents instanceof Map) {
+            this.records = Collections.singleton(documents).iterator();
+            this.parser = null;
+        } else {
+            throw new IllegalArgumentException("Unsupported documents type " + (documents == null ? "null" : documents.getClass().getName()));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = read();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Map<String, Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Map<String, Object> record = next;
+        next = null;
+        return record;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> read() {
+        if (parser == null) {
+            if (!records.hasNext()) {
+                return null;
+            }
+            Object record = records.next();
+            if (!(record instanceof Map)) {
+                throw new IllegalArgumentException("The documents must be objects, found " + (record == null ? "null" : record.getClass().getName()));
+            }
+            return (Map<String, Object>) record;
+        }
+        try {
+            XContentParser.Token token = parser.nextToken();
+            if (token == XContentParser.Token.END_ARRAY || token == null) {
+                return null;
+            }
+            if (token != XContentParser.Token.START_OBJECT) {
+                throw new IllegalArgumentException("The documents must be objects, found " + token);
+            }
+            return parser.map();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (parser != null) {
+                parser.close();
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+}
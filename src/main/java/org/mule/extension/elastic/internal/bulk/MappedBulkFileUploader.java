@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.bulk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import org.apache.http.client.methods.HttpPost;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.mule.extension.elastic.internal.spool.BulkActions;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Uploads an NDJSON bulk file as a sequence of bulk requests. The file is memory-mapped and split on action boundaries into slices of about the chunk size, each
+ *         slice is sent as is without being copied, with a bounded number of requests in flight. The results of the requests are aggregated into one summary.
+ */
+public class MappedBulkFileUploader {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedBulkFileUploader.class);
+
+    private static final long MAX_WINDOW = 1L << 30;
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    private final RestClient lowLevelClient;
+    private final String resource;
+    private final Map<String, String> params;
+    private final int chunkBytes;
+    private final int maxConcurrentRequests;
+    private final Semaphore permits;
+
+    private long actions;
+    private long chunks;
+    private long bytes;
+    private long failed;
+    private long failedChunks;
+    private long took;
+    private final List<String> errors = new ArrayList<>();
+
+    /**
+     * @param lowLevelClient
+     *            Client the chunks are sent with
+     * @param resource
+     *            Bulk endpoint, including the default index and type
+     * @param params
+     *            Bulk request parameters
+     * @param chunkBytes
+     *            Size in bytes after which the actions of a chunk are sent
+     * @param maxConcurrentRequests
+     *            Maximum number of bulk requests in flight
+     */
+    public MappedBulkFileUploader(RestClient lowLevelClient, String resource, Map<String, String> params, int chunkBytes, int maxConcurrentRequests) {
+        this.lowLevelClient = lowLevelClient;
+        this.resource = resource;
+        this.params = new HashMap<>(params);
+        // only the errors of the failed items are returned
+        this.params.put("filter_path", "took,errors,items.*.error");
+        this.chunkBytes = Math.max(1, chunkBytes);
+        this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+        this.permits = new Semaphore(this.maxConcurrentRequests);
+    }
+
+    /**
+     * Upload the file and wait for every bulk request to complete
+     *
+     * @param file
+     *            NDJSON bulk file
+     * @return Number of actions, chunks, bytes, failed actions and chunks, the summed server took time and the first errors
+     * @throws IOException
+     *             If the file cannot be read
+     * @throws InterruptedException
+     *             If interrupted while waiting for the requests in flight
+     */
+    public Map<String, Object> upload(Path file) throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long windowSize = Math.min(size - position, MAX_WINDOW);
+                boolean last = position + windowSize == size;
+                MappedByteBuffer window = channel.map(MapMode.READ_ONLY, position, windowSize);
+                int consumed = uploadWindow(window, (int) windowSize, last);
+                if (consumed == 0) {
+                    throw new IOException("Bulk action at offset " + position + " of " + file + " is larger than " + MAX_WINDOW + " bytes");
+                }
+                position += consumed;
+            }
+        } finally {
+            // every permit is back once the requests in flight completed
+            permits.acquire(maxConcurrentRequests);
+            permits.release(maxConcurrentRequests);
+        }
+        return getSummary();
+    }
+
+    /**
+     * Send the complete actions of a mapped window
+     *
+     * @return Number of bytes consumed, the window ends with an incomplete action that is mapped again with the next window unless it is the last one
+     */
+    private int uploadWindow(ByteBuffer window, int limit, boolean last) throws InterruptedException {
+        int offset = 0;
+        while (offset < limit) {
+            int start = BulkActions.skipBlankLines(window, offset, limit);
+            int end = start;
+            int chunkActions = 0;
+            while (end < limit && end - start < chunkBytes) {
+                int actionStart = BulkActions.skipBlankLines(window, end, limit);
+                if (actionStart == limit) {
+                    end = limit;
+                    break;
+                }
+                int actionEnd = BulkActions.actionEnd(window, actionStart, limit);
+                if (actionEnd < 0) {
+                    if (!last) {
+                        break;
+                    }
+                    actionEnd = limit;
+                }
+                end = actionEnd;
+                chunkActions++;
+            }
+            if (chunkActions == 0) {
+                return end == limit ? limit : start;
+            }
+            ByteBuffer slice = window.duplicate();
+            slice.position(start);
+            slice.limit(end);
+            send(slice.slice(), chunkActions);
+            offset = end;
+        }
+        return offset;
+    }
+
+    private void send(ByteBuffer chunk, int chunkActions) throws InterruptedException {
+        permits.acquire();
+        int length = chunk.remaining();
+        try {
+            lowLevelClient.performRequestAsync(HttpPost.METHOD_NAME, resource, params, new MappedChunkEntity(chunk), new ResponseListener() {
+
+                @Override
+                public void onSuccess(Response response) {
+                    try {
+                        onChunkResponse(ElasticsearchUtils.responseToMap(response), chunkActions, length);
+                    } catch (Exception e) {
+                        onChunkFailure(e, chunkActions, length);
+                    } finally {
+                        permits.release();
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    onChunkFailure(e, chunkActions, length);
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized void onChunkResponse(Map<String, Object> result, int chunkActions, int length) {
+        actions += chunkActions;
+        chunks++;
+        bytes += length;
+        took += ((Number) result.get("took")).longValue();
+        List<Object> items = (List<Object>) result.get("items");
+        if (items != null) {
+            failed += items.size();
+            for (Object item : items) {
+                Map<String, Object> itemResult = (Map<String, Object>) ((Map<String, Object>) item).values().iterator().next();
+                addError(String.valueOf(itemResult.get("error")));
+            }
+        }
+        logger.debug("Uploaded bulk chunk of " + chunkActions + " actions (" + length + " bytes)");
+    }
+
+    private synchronized void onChunkFailure(Exception e, int chunkActions, int length) {
+        actions += chunkActions;
+        chunks++;
+        bytes += length;
+        failed += chunkActions;
+        failedChunks++;
+        addError(e.getMessage());
+        logger.warn("Bulk chunk of " + chunkActions + " actions (" + length + " bytes) failed: " + e.getMessage());
+    }
+
+    private void addError(String error) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    private synchronized Map<String, Object> getSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("actions", actions);
+        summary.put("chunks", chunks);
+        summary.put("bytes", bytes);
+        summary.put("failed", failed);
+        summary.put("failedChunks", failedChunks);
+        summary.put("tookMillis", took);
+        summary.put("errors", new ArrayList<>(errors));
+        return summary;
+    }
+}
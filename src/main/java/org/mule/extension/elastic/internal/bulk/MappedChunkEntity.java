@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.bulk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Request entity written from a slice of a memory-mapped file, the content is handed to the socket without being copied to the heap.
+ */
+class MappedChunkEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+
+    private final ByteBuffer content;
+    private ByteBuffer pending;
+
+    MappedChunkEntity(ByteBuffer content) {
+        this.content = content;
+        setContentType(ContentType.APPLICATION_JSON.toString());
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return content.remaining();
+    }
+
+    @Override
+    public InputStream getContent() {
+        ByteBuffer source = content.duplicate();
+        return new InputStream() {
+
+            @Override
+            public int read() {
+                return source.hasRemaining() ? source.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (!source.hasRemaining()) {
+                    return -1;
+                }
+                int read = Math.min(length, source.remaining());
+                source.get(bytes, offset, read);
+                return read;
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(outstream);
+        ByteBuffer source = content.duplicate();
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioControl) throws IOException {
+        if (pending == null) {
+            pending = content.duplicate();
+        }
+        encoder.write(pending);
+        if (!pending.hasRemaining()) {
+            encoder.complete();
+        }
+    }
+
+    @Override
+    public void close() {
+        // a retry on another host starts over from the beginning of the slice
+        pending = null;
+    }
+}
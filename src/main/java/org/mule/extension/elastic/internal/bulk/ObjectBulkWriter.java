@@ -0,0 +1,430 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.bulk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.cluster.routing.Murmur3HashFunction;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.mule.extension.elastic.internal.spool.BulkActions;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Serializes documents as bulk actions straight into a pooled buffer and sends the buffer as a bulk request whenever it reaches the chunk size, so the memory used
+ *         is bounded by the chunk size instead of the number of documents. With an adaptive controller the chunk size and the number of chunks in flight follow the
+ *         controller, and the chunks or items rejected with 429 are sent again after a backoff. With a shard router the actions are buffered per node hosting the primary
+ *         of their shard and each chunk is sent straight to that node. With ordering lanes the actions are hash partitioned by index and id into lanes, the lanes are sent
+ *         concurrently but each lane has a single chunk in flight, so the writes of a document are applied in the order they were added. A lane does not depend on the
+ *         routing table: its chunk is sent to the node of its primaries when they are all on the same node, and through the connection hosts otherwise. The chunks are
+ *         sent concurrently on the executor of the connection, or on the calling thread when there is a single chunk in flight at a time.
+ */
+public class ObjectBulkWriter implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ObjectBulkWriter.class);
+
+    private static final byte NEWLINE = '\n';
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long INITIAL_BACKOFF = 200;
+    private static final long CLOSE_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+    private final RestClient lowLevelClient;
+    private final String resource;
+    private final Map<String, String> params;
+    private final BulkBufferPool pool;
+    private final int chunkBytes;
+    private final AdaptiveBulkController controller;
+    private final ShardRouter router;
+    private final String index;
+    private final int lanes;
+    private final Executor senders;
+    private final Map<String, Target> targets = new LinkedHashMap<>();
+    private int inFlight;
+    private Exception failure;
+
+    private long documents;
+    private long chunks;
+    private long bytes;
+    private long failed;
+    private long took;
+
+    /**
+     * @param lowLevelClient
+     *            Client the chunks are sent with
+     * @param resource
+     *            Bulk endpoint, including the default index and type
+     * @param params
+     *            Bulk request parameters
+     * @param pool
+     *            Buffer pool of the connection
+     * @param chunkBytes
+     *            Size in bytes after which a chunk is sent, when not adaptive
+     * @param controller
+     *            Adaptive size and concurrency controller, or null to send chunks of a fixed size one at a time
+     * @param router
+     *            Shard router of the connection, or null to send every chunk through the connection hosts
+     * @param index
+     *            Index the documents are written to
+     * @param lanes
+     *            Number of ordering lanes, or 0 when the writes of a document may be applied in any order
+     * @param senders
+     *            Executor sending the chunks concurrently, or null to send each chunk on the calling thread
+     */
+    public ObjectBulkWriter(RestClient lowLevelClient, String resource, Map<String, String> params, BulkBufferPool pool, int chunkBytes,
+            AdaptiveBulkController controller, ShardRouter router, String index, int lanes, Executor senders) {
+        this.lowLevelClient = lowLevelClient;
+        this.resource = resource;
+        this.params = params;
+        this.pool = pool;
+        this.chunkBytes = chunkBytes;
+        this.controller = controller;
+        this.router = router;
+        this.index = index;
+        this.lanes = Math.max(0, lanes);
+        this.senders = senders;
+    }
+
+    /**
+     * Actions buffered for a node, or for the connection hosts when the host is null, or for an ordering lane
+     */
+    private class Target {
+
+        private BulkBufferPool.Buffer buffer = pool.acquire(chunkLimit() + chunkLimit() / 4);
+        private int actions;
+        private boolean sending;
+        private HttpHost host;
+        private boolean mixedHosts;
+
+        /**
+         * Track the node of the buffered actions, the chunk goes to that node only when all its actions are routed to it
+         */
+        void route(HttpHost actionHost) {
+            if (actions == 0) {
+                host = actionHost;
+                mixedHosts = false;
+            } else if (!Objects.equals(host, actionHost)) {
+                mixedHosts = true;
+            }
+        }
+
+        HttpHost chunkHost() {
+            return mixedHosts ? null : host;
+        }
+    }
+
+    private Target target(String id, String routing) throws IOException {
+        HttpHost host = null;
+        if (router != null && (routing != null || id != null)) {
+            host = router.primaryHost(index, routing != null ? routing : id);
+        }
+        String key;
+        if (lanes > 0) {
+            // a lane is keyed by its number alone: a routing table reload can move a document to another node, the writes of the document stay in the same lane
+            // documents with a generated id cannot be written twice, they are spread over the lanes
+            int lane = id != null ? Math.floorMod(Murmur3HashFunction.hash(index + "/" + id), lanes) : (int) (documents % lanes);
+            key = "#" + lane;
+        } else {
+            key = String.valueOf(host);
+        }
+        Target target = targets.get(key);
+        if (target == null) {
+            target = new Target();
+            targets.put(key, target);
+        }
+        target.route(host);
+        return target;
+    }
+
+    private int chunkLimit() {
+        return controller != null ? controller.getChunkBytes() : chunkBytes;
+    }
+
+    private int concurrencyLimit() {
+        // each node receives its own chunks, so the limit applies per node
+        return (controller != null ? controller.getConcurrency() : 1) * Math.max(1, targets.size());
+    }
+
+    /**
+     * Serialize a bulk action, sending the chunk once it is full
+     * 
+     * @param opType
+     *            Action type
+     * @param id
+     *            Document id, or null to let Elasticsearch generate it
+     * @param routing
+     *            Routing value, or null
+     * @param source
+     *            Document source, ignored for deletes
+     */
+    public void add(OpType opType, String id, String routing, Map<String, Object> source) throws Exception {
+        Target target = target(id, routing);
+        BulkBufferPool.Buffer buffer = target.buffer;
+        try (XContentBuilder action = XContentFactory.jsonBuilder(buffer)) {
+            action.startObject().startObject(opType.getLowercase());
+            if (id != null) {
+                action.field("_id", id);
+            }
+            if (routing != null) {
+                action.field("_routing", routing);
+            }
+            action.endObject().endObject();
+        }
+        buffer.write(NEWLINE);
+
+        if (opType != OpType.DELETE) {
+            try (XContentBuilder document = XContentFactory.jsonBuilder(buffer)) {
+                if (opType == OpType.UPDATE) {
+                    document.startObject().field("doc", source).endObject();
+                } else {
+                    document.map(source);
+                }
+            }
+            buffer.write(NEWLINE);
+        }
+
+        documents++;
+        target.actions++;
+        if (buffer.size() >= chunkLimit()) {
+            flush(target);
+        }
+    }
+
+    /**
+     * Hand the buffered actions of a target to a sender, waiting while the number of chunks in flight is at the concurrency limit, or while the previous chunk of an
+     * ordering lane is in flight
+     */
+    private void flush(Target target) throws Exception {
+        if (target.actions == 0) {
+            return;
+        }
+        BulkBufferPool.Buffer chunk = target.buffer;
+        HttpHost host = target.chunkHost();
+        synchronized (this) {
+            while ((inFlight >= concurrencyLimit() || (lanes > 0 && target.sending)) && failure == null) {
+                wait();
+            }
+            throwFailure();
+            inFlight++;
+            target.sending = true;
+        }
+        target.buffer = pool.acquire(chunkLimit() + chunkLimit() / 4);
+        target.actions = 0;
+        if (senders == null) {
+            send(target, chunk, host);
+            return;
+        }
+        try {
+            senders.execute(() -> send(target, chunk, host));
+        } catch (RejectedExecutionException e) {
+            // the executor is saturated or stopping, the chunk is sent on the calling thread
+            send(target, chunk, host);
+        }
+    }
+
+    /**
+     * Send the pending actions and wait until every chunk was sent
+     */
+    public void finish() throws Exception {
+        for (Target target : targets.values()) {
+            flush(target);
+        }
+        synchronized (this) {
+            while (inFlight > 0) {
+                wait();
+            }
+            throwFailure();
+        }
+    }
+
+    private void throwFailure() throws Exception {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void send(Target target, BulkBufferPool.Buffer chunk, HttpHost host) {
+        try {
+            byte[] data = chunk.array();
+            int length = chunk.size();
+            long backoff = INITIAL_BACKOFF;
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                List<byte[]> rejected;
+                try {
+                    rejected = sendChunk(host, data, length);
+                } catch (ResponseException e) {
+                    if (e.getResponse().getStatusLine().getStatusCode() != 429 || controller == null) {
+                        throw e;
+                    }
+                    controller.onRejection();
+                    rejected = null;
+                }
+                if (rejected != null && rejected.isEmpty()) {
+                    return;
+                }
+                if (controller == null || attempt == MAX_ATTEMPTS) {
+                    int lost = rejected != null ? rejected.size() : split(data, length).size();
+                    synchronized (this) {
+                        failed += lost;
+                    }
+                    logger.warn(lost + " bulk actions were rejected by the cluster");
+                    return;
+                }
+                if (rejected != null) {
+                    data = concat(rejected);
+                    length = data.length;
+                }
+                Thread.sleep(backoff);
+                backoff *= 2;
+            }
+        } catch (Exception e) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        } finally {
+            pool.release(chunk);
+            synchronized (this) {
+                inFlight--;
+                target.sending = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return The actions rejected with 429
+     */
+    @SuppressWarnings("unchecked")
+    private List<byte[]> sendChunk(HttpHost host, byte[] data, int length) throws IOException {
+        long start = System.currentTimeMillis();
+        Response response;
+        if (host == null) {
+            response = lowLevelClient.performRequest(HttpPost.METHOD_NAME, resource, params, new NByteArrayEntity(data, 0, length, ContentType.APPLICATION_JSON));
+        } else {
+            try {
+                response = router.nodeClient(host).performRequest(HttpPost.METHOD_NAME, resource, params, new NByteArrayEntity(data, 0, length, ContentType.APPLICATION_JSON));
+            } catch (ResponseException e) {
+                throw e;
+            } catch (IOException e) {
+                // the node left the cluster or moved, the connection hosts route the chunk while the routing table is refreshed
+                logger.debug("Bulk chunk to node " + host + " failed, sending it through the connection hosts: " + e.getMessage());
+                router.invalidate(index);
+                response = lowLevelClient.performRequest(HttpPost.METHOD_NAME, resource, params, new NByteArrayEntity(data, 0, length, ContentType.APPLICATION_JSON));
+            }
+        }
+        Map<String, Object> result = ElasticsearchUtils.responseToMap(response);
+        long latency = System.currentTimeMillis() - start;
+        long chunkTook = ((Number) result.get("took")).longValue();
+        List<Object> items = (List<Object>) result.get("items");
+
+        List<Integer> rejectedItems = new ArrayList<>();
+        int itemFailures = 0;
+        if (Boolean.TRUE.equals(result.get("errors"))) {
+            for (int i = 0; i < items.size(); i++) {
+                Map<String, Object> itemResult = (Map<String, Object>) ((Map<String, Object>) items.get(i)).values().iterator().next();
+                if (controller != null && ((Number) itemResult.get("status")).intValue() == 429) {
+                    rejectedItems.add(i);
+                } else if (itemResult.get("error") != null) {
+                    itemFailures++;
+                    logger.warn("Bulk action " + itemResult.get("_id") + " failed: " + itemResult.get("error"));
+                }
+            }
+        }
+        if (controller != null) {
+            controller.onResponse(latency, chunkTook, rejectedItems.size(), items.size());
+        }
+        synchronized (this) {
+            chunks++;
+            bytes += length;
+            took += chunkTook;
+            failed += itemFailures;
+        }
+        logger.debug("Sent bulk chunk of " + items.size() + " actions (" + length + " bytes) in " + latency + " ms");
+
+        if (rejectedItems.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<byte[]> actions = split(data, length);
+        List<byte[]> rejected = new ArrayList<>();
+        for (int index : rejectedItems) {
+            rejected.add(actions.get(index));
+        }
+        return rejected;
+    }
+
+    private static List<byte[]> split(byte[] data, int length) {
+        List<byte[]> actions = new ArrayList<>();
+        BulkActions.split(Arrays.copyOf(data, length), actions);
+        return actions;
+    }
+
+    private static byte[] concat(List<byte[]> actions) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (byte[] action : actions) {
+            body.write(action, 0, action.length);
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * @return Number of documents, chunks, bytes, failed actions and the summed server took time
+     */
+    public synchronized Map<String, Object> getSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("documents", documents);
+        summary.put("chunks", chunks);
+        summary.put("bytes", bytes);
+        summary.put("failed", failed);
+        summary.put("tookMillis", took);
+        return summary;
+    }
+
+    @Override
+    public void close() {
+        // the executor is shared, only the chunks of this writer are waited for before their buffers are released
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT;
+        synchronized (this) {
+            long remaining;
+            while (inFlight > 0 && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        for (Target target : targets.values()) {
+            if (target.buffer != null) {
+                pool.release(target.buffer);
+                target.buffer = null;
+            }
+        }
+    }
+}
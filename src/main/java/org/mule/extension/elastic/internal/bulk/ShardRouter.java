@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.bulk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.HttpGet;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder.HttpClientConfigCallback;
+import org.elasticsearch.cluster.routing.Murmur3HashFunction;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Caches the routing table of the indices written with shard-aware bulk requests and computes the shard of a document the way Elasticsearch does (murmur3 of the
+ *         routing value or id), so each action can be sent directly to the node hosting the primary of its shard. The cached routing of an index expires after a short
+ *         interval and is dropped as soon as a node can no longer be reached, so relocations and node changes are picked up. The indices whose routing partition size is
+ *         above 1 spread a routing value over several shards by id and are routed by the cluster.
+ */
+public class ShardRouter implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRouter.class);
+
+    private static final long ROUTING_TTL = TimeUnit.SECONDS.toMillis(30);
+
+    private final RestClient lowLevelClient;
+    private final String scheme;
+    private final HttpClientConfigCallback httpClientConfigCallback;
+    private final Map<String, IndexRouting> routings = new ConcurrentHashMap<>();
+    private final Map<HttpHost, RestClient> nodeClients = new ConcurrentHashMap<>();
+
+    /**
+     * @param lowLevelClient
+     *            Client of the connection hosts the cluster state is read with
+     * @param scheme
+     *            Scheme of the connection, used for the node clients
+     * @param httpClientConfigCallback
+     *            Credentials and SSL configuration of the connection, or null
+     */
+    public ShardRouter(RestClient lowLevelClient, String scheme, HttpClientConfigCallback httpClientConfigCallback) {
+        this.lowLevelClient = lowLevelClient;
+        this.scheme = scheme;
+        this.httpClientConfigCallback = httpClientConfigCallback;
+    }
+
+    /**
+     * Routing of a concrete index: the number of shards, the routing shards used by the hash and the HTTP address of the node hosting each primary
+     */
+    private static class IndexRouting {
+
+        private final int numberOfShards;
+        private final int routingNumShards;
+        private final HttpHost[] primaries;
+        private final long loadedAt = System.currentTimeMillis();
+
+        IndexRouting(int numberOfShards, int routingNumShards, HttpHost[] primaries) {
+            this.numberOfShards = numberOfShards;
+            this.routingNumShards = routingNumShards;
+            this.primaries = primaries;
+        }
+
+        int shard(String routing) {
+            return shardId(routing, numberOfShards, routingNumShards);
+        }
+    }
+
+    /**
+     * Shard a routing value is sent to, computed the way the cluster computes it for an index without routing partitions
+     *
+     * @param routing
+     *            Routing value of the document, its id when no routing is set
+     * @param numberOfShards
+     *            Number of primary shards of the index
+     * @param routingNumShards
+     *            Number of routing shards of the index, a multiple of the number of shards
+     * @return The shard number
+     */
+    public static int shardId(String routing, int numberOfShards, int routingNumShards) {
+        int hash = Murmur3HashFunction.hash(routing);
+        return Math.floorMod(hash, routingNumShards) / (routingNumShards / numberOfShards);
+    }
+
+    /**
+     * Host of the node holding the primary of the shard a document is routed to
+     *
+     * @param index
+     *            Index name
+     * @param routing
+     *            Routing value of the document, its id when no routing is set
+     * @return The node HTTP address, or null when the primary is unassigned or the index does not resolve to a single concrete index
+     * @throws IOException
+     *             If the cluster state cannot be read
+     */
+    public HttpHost primaryHost(String index, String routing) throws IOException {
+        IndexRouting indexRouting = routings.get(index);
+        if (indexRouting == null || System.currentTimeMillis() - indexRouting.loadedAt > ROUTING_TTL) {
+            indexRouting = load(index);
+            routings.put(index, indexRouting);
+        }
+        if (indexRouting.primaries.length == 0) {
+            return null;
+        }
+        return indexRouting.primaries[indexRouting.shard(routing)];
+    }
+
+    /**
+     * Drop the cached routing of an index, it is read again on the next lookup
+     */
+    public void invalidate(String index) {
+        routings.remove(index);
+    }
+
+    /**
+     * @return Client sending requests to a single node, created on first use with the credentials and SSL configuration of the connection
+     */
+    public RestClient nodeClient(HttpHost host) {
+        return nodeClients.computeIfAbsent(host, key -> {
+            if (httpClientConfigCallback != null) {
+                return RestClient.builder(key).setHttpClientConfigCallback(httpClientConfigCallback).build();
+            }
+            return RestClient.builder(key).build();
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private IndexRouting load(String index) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        params.put("filter_path", "metadata.indices.*.settings.index.number_of_shards,metadata.indices.*.settings.index.routing_partition_size,"
+                + "metadata.indices.*.routing_num_shards,routing_table.indices.*.shards");
+        Map<String, Object> state = get("/_cluster/state/metadata,routing_table/" + index, params);
+
+        Map<String, Object> metadata = (Map<String, Object>) state.get("metadata");
+        Map<String, Object> indices = metadata != null ? (Map<String, Object>) metadata.get("indices") : null;
+        if (indices == null || indices.size() != 1) {
+            // aliases over several indices are routed by the cluster
+            logger.debug("Index " + index + " does not resolve to a single concrete index, shard-aware routing is not used");
+            return new IndexRouting(1, 1, new HttpHost[0]);
+        }
+        String concreteIndex = indices.keySet().iterator().next();
+        Map<String, Object> indexMetadata = (Map<String, Object>) indices.get(concreteIndex);
+        Map<String, Object> settings = (Map<String, Object>) ((Map<String, Object>) indexMetadata.get("settings")).get("index");
+        int numberOfShards = Integer.parseInt(String.valueOf(settings.get("number_of_shards")));
+        Object routingPartitionSize = settings.get("routing_partition_size");
+        if (routingPartitionSize != null && Integer.parseInt(String.valueOf(routingPartitionSize)) > 1) {
+            // the shard also depends on a hash of the id, which the routing value alone does not give
+            logger.debug("Index " + concreteIndex + " has a routing partition size of " + routingPartitionSize + ", shard-aware routing is not used");
+            return new IndexRouting(1, 1, new HttpHost[0]);
+        }
+        Object routingNumShards = indexMetadata.get("routing_num_shards");
+
+        Map<String, String> nodeHosts = nodeHosts();
+        Map<String, Object> routingTable = (Map<String, Object>) ((Map<String, Object>) state.get("routing_table")).get("indices");
+        Map<String, Object> shards = (Map<String, Object>) ((Map<String, Object>) routingTable.get(concreteIndex)).get("shards");
+
+        HttpHost[] primaries = new HttpHost[numberOfShards];
+        for (Map.Entry<String, Object> shard : shards.entrySet()) {
+            for (Map<String, Object> copy : (List<Map<String, Object>>) shard.getValue()) {
+                if (Boolean.TRUE.equals(copy.get("primary")) && "STARTED".equals(copy.get("state"))) {
+                    String address = nodeHosts.get(copy.get("node"));
+                    if (address != null) {
+                        primaries[Integer.parseInt(shard.getKey())] = HttpHost.create(scheme + "://" + address);
+                    }
+                }
+            }
+        }
+        return new IndexRouting(numberOfShards, routingNumShards != null ? Integer.parseInt(String.valueOf(routingNumShards)) : numberOfShards, primaries);
+    }
+
+    /**
+     * @return HTTP publish address of each node by node id
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, String> nodeHosts() throws IOException {
+        Map<String, String> params = new HashMap<>();
+        params.put("filter_path", "nodes.*.http.publish_address");
+        Map<String, Object> nodes = (Map<String, Object>) get("/_nodes/http", params).get("nodes");
+        Map<String, String> hosts = new HashMap<>();
+        if (nodes != null) {
+            for (Map.Entry<String, Object> node : nodes.entrySet()) {
+                Map<String, Object> http = (Map<String, Object>) ((Map<String, Object>) node.getValue()).get("http");
+                if (http != null) {
+                    String address = (String) http.get("publish_address");
+                    // the publish address is reported as "hostname/ip:port" when the node has a host name
+                    hosts.put(node.getKey(), address.substring(address.lastIndexOf('/') + 1));
+                }
+            }
+        }
+        return hosts;
+    }
+
+    private Map<String, Object> get(String endpoint, Map<String, String> params) throws IOException {
+        Response response = lowLevelClient.performRequest(HttpGet.METHOD_NAME, endpoint, params);
+        try (InputStream content = response.getEntity().getContent()) {
+            return XContentHelper.convertToMap(XContentType.JSON.xContent(), content, false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (RestClient nodeClient : nodeClients.values()) {
+            nodeClient.close();
+        }
+        nodeClients.clear();
+        routings.clear();
+    }
+}
@@ -0,0 +1,361 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.bulk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.mule.extension.elastic.internal.connection.provider.configuration.WriteCoalescingConfiguration;
+import org.mule.extension.elastic.internal.error.ElasticsearchError;
+import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.mule.runtime.api.metadata.MediaType;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.mule.runtime.extension.api.runtime.process.CompletionCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Holds the writes for a short window and merges the writes of the same document before sending them in one bulk request. Partial updates are merged field by
+ *         field, the last write of a field wins, and an update following an index is merged into its source. An index or a delete supersedes the pending writes of the
+ *         document, so an index followed by a delete is sent as a single delete. The callback of a merged or superseded write is completed with the result of the write
+ *         that replaced it. A create is never merged nor superseded, it is sent as its own action so its caller still sees the conflict when the document exists. At most
+ *         one bulk request is in flight, the writes received meanwhile are sent once it completed, so the writes of a document reach the cluster in order.
+ */
+public class WriteCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteCoalescer.class);
+
+    private static final int RETRY_ON_CONFLICT = 3;
+    private static final byte NEWLINE = '\n';
+    private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private final RestClient lowLevelClient;
+    private final long window;
+    private final int maxDocuments;
+    private final ScheduledExecutorService scheduler;
+
+    private Map<String, Document> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+    private boolean inFlight;
+    private long receivedWrites;
+    private long sentWrites;
+    private long bulkRequests;
+
+    public WriteCoalescer(RestClient lowLevelClient, WriteCoalescingConfiguration configuration, ScheduledExecutorService scheduler) {
+        this.lowLevelClient = lowLevelClient;
+        this.scheduler = scheduler;
+        this.window = Math.max(1, configuration.getCoalescingWindow());
+        this.maxDocuments = Math.max(1, configuration.getMaxCoalescedDocuments());
+    }
+
+    /**
+     * A write waiting to be sent and the callbacks of the writes merged into it
+     */
+    private static class Write {
+
+        private final OpType opType;
+        private final Map<String, Object> source;
+        private final List<CompletionCallback<String, StatusLine>> callbacks = new ArrayList<>();
+
+        Write(OpType opType, Map<String, Object> source) {
+            this.opType = opType;
+            this.source = source != null ? new LinkedHashMap<>(source) : null;
+        }
+    }
+
+    /**
+     * The pending writes of a document, in the order they are sent
+     */
+    private static class Document {
+
+        private final String index;
+        private final String type;
+        private final String id;
+        private final String routing;
+        private final List<Write> writes = new ArrayList<>();
+
+        Document(String index, String type, String id, String routing) {
+            this.index = index;
+            this.type = type;
+            this.id = id;
+            this.routing = routing;
+        }
+    }
+
+    /**
+     * Add a write, merging it with the pending writes of the same document
+     *
+     * @param index
+     *            Index name
+     * @param type
+     *            Type name
+     * @param id
+     *            Document id
+     * @param routing
+     *            Routing value, or null
+     * @param opType
+     *            Write action
+     * @param source
+     *            Document source, or the partial document of an update. Ignored for deletes.
+     * @param callback
+     *            Completed with the bulk item result once the write was sent
+     */
+    public void write(String index, String type, String id, String routing, OpType opType, Map<String, Object> source, CompletionCallback<String, StatusLine> callback) {
+        boolean full;
+        synchronized (this) {
+            Document document = pending.computeIfAbsent(index + "/" + type + "/" + id + "/" + routing, key -> new Document(index, type, id, routing));
+            merge(document.writes, opType, source).callbacks.add(callback);
+            receivedWrites++;
+            full = pending.size() >= maxDocuments;
+            if (!full && !flushScheduled) {
+                try {
+                    scheduler.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+                    flushScheduled = true;
+                } catch (RejectedExecutionException e) {
+                    // the connection is closing, the write is sent right away
+                    full = true;
+                }
+            }
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * @return The write the new write was merged into
+     */
+    private static Write merge(List<Write> writes, OpType opType, Map<String, Object> source) {
+        Write last = writes.isEmpty() ? null : writes.get(writes.size() - 1);
+        if (opType == OpType.INDEX || opType == OpType.DELETE) {
+            // the document is replaced or removed whatever the pending writes following the last create did
+            int created = 0;
+            for (int i = 0; i < writes.size(); i++) {
+                if (writes.get(i).opType == OpType.CREATE) {
+                    created = i + 1;
+                }
+            }
+            Write write = new Write(opType, opType == OpType.DELETE ? null : source);
+            List<Write> superseded = writes.subList(created, writes.size());
+            for (Write replaced : superseded) {
+                write.callbacks.addAll(replaced.callbacks);
+            }
+            superseded.clear();
+            writes.add(write);
+            return write;
+        }
+        if (opType == OpType.UPDATE && last != null && last.opType != OpType.DELETE && last.opType != OpType.CREATE) {
+            mergeFields(last.source, source);
+            return last;
+        }
+        // a create, or an update of a document deleted in the window, keeps its own result
+        Write write = new Write(opType, source);
+        writes.add(write);
+        return write;
+    }
+
+    /**
+     * Merge a partial document the way an update does: objects are merged recursively, any other value replaces the previous one
+     */
+    @SuppressWarnings("unchecked")
+    private static void mergeFields(Map<String, Object> target, Map<String, Object> update) {
+        for (Map.Entry<String, Object> field : update.entrySet()) {
+            Object previous = target.get(field.getKey());
+            if (previous instanceof Map && field.getValue() instanceof Map) {
+                Map<String, Object> merged = new LinkedHashMap<>((Map<String, Object>) previous);
+                mergeFields(merged, (Map<String, Object>) field.getValue());
+                target.put(field.getKey(), merged);
+            } else {
+                target.put(field.getKey(), field.getValue());
+            }
+        }
+    }
+
+    /**
+     * Send the pending writes in one bulk request, or once the bulk request in flight completed
+     */
+    public void flush() {
+        Map<String, Document> batch;
+        synchronized (this) {
+            flushScheduled = false;
+            if (inFlight || pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            inFlight = true;
+        }
+
+        List<Write> sent = new ArrayList<>();
+        for (Document document : batch.values()) {
+            sent.addAll(document.writes);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            for (Document document : batch.values()) {
+                for (Write write : document.writes) {
+                    writeAction(body, document, write);
+                }
+            }
+        } catch (IOException e) {
+            fail(sent, e);
+            completed();
+            return;
+        }
+        synchronized (this) {
+            sentWrites += sent.size();
+            bulkRequests++;
+        }
+
+        lowLevelClient.performRequestAsync(HttpPost.METHOD_NAME, "/_bulk", Collections.emptyMap(), new NByteArrayEntity(body.toByteArray(), ContentType.APPLICATION_JSON),
+                new ResponseListener() {
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public void onSuccess(Response response) {
+                        try {
+                            List<Object> items = (List<Object>) ElasticsearchUtils.responseToMap(response).get("items");
+                            for (int i = 0; i < sent.size(); i++) {
+                                Map<String, Object> itemResult = (Map<String, Object>) ((Map<String, Object>) items.get(i)).values().iterator().next();
+                                complete(sent.get(i), itemResult, response.getStatusLine());
+                            }
+                        } catch (Exception e) {
+                            fail(sent, e);
+                        } finally {
+                            completed();
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        try {
+                            fail(sent, e);
+                        } finally {
+                            completed();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Release the in flight bulk request and send the writes received meanwhile
+     */
+    private void completed() {
+        synchronized (this) {
+            inFlight = false;
+            notifyAll();
+        }
+        flush();
+    }
+
+    private static void writeAction(ByteArrayOutputStream body, Document document, Write write) throws IOException {
+        try (XContentBuilder action = XContentFactory.jsonBuilder(body)) {
+            action.startObject().startObject(write.opType.getLowercase()).field("_index", document.index).field("_type", document.type).field("_id", document.id);
+            if (document.routing != null) {
+                action.field("_routing", document.routing);
+            }
+            if (write.opType == OpType.UPDATE) {
+                // the coalesced updates are merged partial documents, a concurrent write is retried rather than failing the whole batch
+                action.field("retry_on_conflict", RETRY_ON_CONFLICT);
+            }
+            action.endObject().endObject();
+        }
+        body.write(NEWLINE);
+        if (write.opType == OpType.DELETE) {
+            return;
+        }
+        try (XContentBuilder source = XContentFactory.jsonBuilder(body)) {
+            if (write.opType == OpType.UPDATE) {
+                source.startObject().field("doc", write.source).endObject();
+            } else {
+                source.map(write.source);
+            }
+        }
+        body.write(NEWLINE);
+    }
+
+    private static void complete(Write write, Map<String, Object> itemResult, StatusLine statusLine) throws IOException {
+        if (itemResult.get("error") != null) {
+            ElasticsearchException error = new ElasticsearchException(ElasticsearchError.OPERATION_FAILED,
+                    new IOException("Coalesced " + write.opType.getLowercase() + " of document " + itemResult.get("_id") + " failed: " + itemResult.get("error")));
+            for (CompletionCallback<String, StatusLine> callback : write.callbacks) {
+                callback.error(error);
+            }
+            return;
+        }
+        String output = ElasticsearchUtils.toJson(itemResult);
+        for (CompletionCallback<String, StatusLine> callback : write.callbacks) {
+            callback.success(Result.<String, StatusLine>builder()
+                    .output(output)
+                    .attributes(statusLine)
+                    .mediaType(MediaType.APPLICATION_JSON)
+                    .build());
+        }
+    }
+
+    private static void fail(List<Write> writes, Exception e) {
+        logger.warn("Coalesced bulk request failed: " + e.getMessage());
+        ElasticsearchException error = new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        for (Write write : writes) {
+            for (CompletionCallback<String, StatusLine> callback : write.callbacks) {
+                callback.error(error);
+            }
+        }
+    }
+
+    /**
+     * @return Number of writes received and sent, bulk requests and documents waiting
+     */
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("receivedWrites", receivedWrites);
+        status.put("sentWrites", sentWrites);
+        status.put("bulkRequests", bulkRequests);
+        status.put("pendingDocuments", pending.size());
+        return status;
+    }
+
+    /**
+     * Send the pending writes and wait for the bulk requests to complete
+     */
+    public void shutdown() {
+        flush();
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT;
+        synchronized (this) {
+            long remaining;
+            while ((inFlight || !pending.isEmpty()) && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (inFlight || !pending.isEmpty()) {
+                logger.warn("Coalesced writes still pending on shutdown: " + pending.size() + " documents");
+            }
+        }
+    }
+}
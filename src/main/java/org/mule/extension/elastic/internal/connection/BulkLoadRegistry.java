@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Keeps the target settings of the indices created in bulk load mode through this connection without a type, so finishing the load restores the settings the
+ *         index was created with rather than the Elasticsearch defaults. The indices created with a type record them in the _meta of its mapping instead, under the
+ *         bulk_load key.
+ */
+public class BulkLoadRegistry {
+
+    public static final String REPLICAS = "index.number_of_replicas";
+    public static final String REFRESH_INTERVAL = "index.refresh_interval";
+    public static final String TRANSLOG_DURABILITY = "index.translog.durability";
+    public static final String META = "bulk_load";
+
+    private final Map<String, Map<String, String>> targetSettings = new ConcurrentHashMap<>();
+
+    /**
+     * @param index
+     *            Index created in bulk load mode
+     * @param settings
+     *            Settings to restore once the load finished
+     */
+    public void started(String index, Map<String, String> settings) {
+        targetSettings.put(index, settings);
+    }
+
+    /**
+     * @param index
+     *            Index whose load finished
+     * @return The settings to restore, or null when the index was not created in bulk load mode through this connection
+     */
+    public Map<String, String> finished(String index) {
+        return targetSettings.remove(index);
+    }
+}
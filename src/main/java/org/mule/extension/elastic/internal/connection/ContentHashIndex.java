@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Open addressing table of the content hash of the last written source of each document, keyed by the hash of its index, type and id. Each slot is 24 bytes, the key
+ *         hash, the hash of the index name and the content hash, stored off-heap or in a memory-mapped file. The table is a cache: when the probe sequence of a key is full
+ *         the home slot is overwritten, which at worst lets an unchanged document be written again. The index hash lets the documents of a deleted or recreated index be
+ *         forgotten. A mapped file starts with a header holding the format and the number of slots, a file written with another format or capacity is cleared on open.
+ */
+public class ContentHashIndex implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentHashIndex.class);
+
+    private static final int SLOT_SIZE = 24;
+    private static final int KEY = 0;
+    private static final int INDEX = 8;
+    private static final int CONTENT = 16;
+    private static final int MAX_PROBES = 16;
+    private static final int MAX_SLOTS = 1 << 26;
+    private static final long EMPTY = 0;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int MAGIC = 0x45534849;
+    private static final int FORMAT = 2;
+
+    private final ByteBuffer table;
+    private final MappedByteBuffer mapped;
+    private final int mask;
+    private final FileChannel channel;
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    /**
+     * @param file
+     *            File the table is mapped to, or null to keep it in a direct buffer
+     * @param capacity
+     *            Number of tracked documents, rounded up to a power of two
+     */
+    public ContentHashIndex(Path file, int capacity) throws IOException {
+        int slots = Integer.highestOneBit(Math.max(MAX_PROBES, Math.min(capacity, MAX_SLOTS) - 1)) << 1;
+        this.mask = slots - 1;
+        if (file != null) {
+            long size = HEADER_SIZE + (long) slots * SLOT_SIZE;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean reset = channel.size() != size;
+            if (reset && channel.size() != 0) {
+                logger.warn("Content hash index " + file + " does not match the configured capacity, it is cleared");
+                channel.truncate(0);
+            }
+            this.mapped = channel.map(MapMode.READ_WRITE, 0, size);
+            if (!reset && (mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT || mapped.getInt(8) != slots)) {
+                logger.warn("Content hash index " + file + " was written with another format or capacity, it is cleared");
+                reset = true;
+            }
+            mapped.position(HEADER_SIZE);
+            this.table = mapped.slice();
+            if (reset) {
+                // the extended part of a mapped file is not guaranteed to be zeroed
+                for (int offset = 0; offset < table.capacity(); offset += 8) {
+                    table.putLong(offset, EMPTY);
+                }
+                mapped.putInt(0, MAGIC);
+                mapped.putInt(4, FORMAT);
+                mapped.putInt(8, slots);
+                mapped.force();
+            }
+        } else {
+            this.channel = null;
+            this.mapped = null;
+            this.table = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+        }
+    }
+
+    /**
+     * @return Hash of the document key
+     */
+    public static long key(String index, String type, String id) {
+        byte[] key = (index + "/" + type + "/" + id).getBytes(StandardCharsets.UTF_8);
+        return nonEmpty(MurmurHash3.hash128(key, 0, key.length, 0, new MurmurHash3.Hash128()).h1);
+    }
+
+    /**
+     * @return Hash of the index name
+     */
+    public static long index(String index) {
+        byte[] name = index.getBytes(StandardCharsets.UTF_8);
+        return nonEmpty(MurmurHash3.hash128(name, 0, name.length, 0, new MurmurHash3.Hash128()).h1);
+    }
+
+    /**
+     * @return Hash of the serialized document source
+     */
+    public static long content(byte[] source, int offset, int length) {
+        return nonEmpty(MurmurHash3.hash128(source, offset, length, 0, new MurmurHash3.Hash128()).h1);
+    }
+
+    private static long nonEmpty(long hash) {
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    /**
+     * Check whether the document was last written with the same content, counting the skipped writes
+     * 
+     * @return True if the write can be skipped
+     */
+    public synchronized boolean isUnchanged(long key, long content) {
+        int slot = find(key);
+        if (slot >= 0 && table.getLong(slot * SLOT_SIZE + CONTENT) == content) {
+            skipped.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record the content of a written document
+     *
+     * @param index
+     *            Hash of the index name of the document
+     */
+    public synchronized void put(long key, long index, long content) {
+        int slot = find(key);
+        if (slot < 0) {
+            slot = freeSlot(key);
+        }
+        table.putLong(slot * SLOT_SIZE + KEY, key);
+        table.putLong(slot * SLOT_SIZE + INDEX, index);
+        table.putLong(slot * SLOT_SIZE + CONTENT, content);
+        written.incrementAndGet();
+    }
+
+    /**
+     * Forget the content of a deleted or partially updated document
+     */
+    public synchronized void remove(long key) {
+        int slot = find(key);
+        if (slot >= 0) {
+            // the key stays in place so the probe sequences of the other keys are not broken
+            table.putLong(slot * SLOT_SIZE + CONTENT, EMPTY);
+        }
+    }
+
+    /**
+     * Forget the content of the documents of deleted or recreated indices, so their next write is not skipped
+     *
+     * @param indices
+     *            Index name or comma separated list of index names. A wildcard or _all forgets every document.
+     */
+    public synchronized void invalidate(String indices) {
+        String[] names = indices.split(",");
+        long[] hashes = new long[names.length];
+        boolean all = false;
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i].trim();
+            all |= name.contains("*") || "_all".equals(name);
+            hashes[i] = index(name);
+        }
+        for (int slot = 0; slot <= mask; slot++) {
+            long index = table.getLong(slot * SLOT_SIZE + INDEX);
+            for (int i = 0; i < hashes.length; i++) {
+                if (all || index == hashes[i]) {
+                    table.putLong(slot * SLOT_SIZE + CONTENT, EMPTY);
+                    break;
+                }
+            }
+        }
+    }
+
+    private int find(long key) {
+        int home = (int) (key ^ (key >>> 32)) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) & mask;
+            long slotKey = table.getLong(slot * SLOT_SIZE + KEY);
+            if (slotKey == key) {
+                return slot;
+            }
+            if (slotKey == EMPTY) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private int freeSlot(long key) {
+        int home = (int) (key ^ (key >>> 32)) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) & mask;
+            if (table.getLong(slot * SLOT_SIZE + KEY) == EMPTY) {
+                return slot;
+            }
+        }
+        return home;
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            mapped.force();
+            channel.close();
+        }
+    }
+}
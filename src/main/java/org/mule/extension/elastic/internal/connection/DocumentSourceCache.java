@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Least recently used cache of the last known source and version of the documents written with delta updates. The delta of a partial document against the known
+ *         source holds only the fields whose value changed; the version guards against a known source made stale by another writer.
+ */
+public class DocumentSourceCache {
+
+    /**
+     * Source of a document at a version
+     */
+    public static class Entry {
+
+        private final Map<String, Object> source;
+        private final long version;
+
+        public Entry(Map<String, Object> source, long version) {
+            this.source = source;
+            this.version = version;
+        }
+
+        public Map<String, Object> getSource() {
+            return source;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    private final Map<String, Entry> entries;
+
+    public DocumentSourceCache(int maxEntries) {
+        int capacity = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public static String key(String index, String type, String id, String routing) {
+        return index + "/" + type + "/" + id + (routing != null ? "/" + routing : "");
+    }
+
+    public synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(String key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    public synchronized void remove(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Fields of a partial document whose value differs from the known source. Objects are compared field by field, so only the changed leaves of an object are kept.
+     *
+     * @param known
+     *            Known source of the document
+     * @param partial
+     *            Partial document to apply
+     * @return The changed fields, empty when applying the partial document would not change the source
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> delta(Map<String, Object> known, Map<String, Object> partial) {
+        Map<String, Object> delta = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> field : partial.entrySet()) {
+            Object previous = known.get(field.getKey());
+            Object value = field.getValue();
+            if (previous instanceof Map && value instanceof Map) {
+                Map<String, Object> nested = delta((Map<String, Object>) previous, (Map<String, Object>) value);
+                if (!nested.isEmpty()) {
+                    delta.put(field.getKey(), nested);
+                }
+            } else if (!known.containsKey(field.getKey()) || !sameValue(previous, value)) {
+                delta.put(field.getKey(), value);
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Apply a partial document to a source the way an update does: objects are merged recursively, any other value replaces the previous one
+     *
+     * @return A new source, the known source is not modified
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> merge(Map<String, Object> known, Map<String, Object> partial) {
+        Map<String, Object> merged = new LinkedHashMap<>(known);
+        for (Map.Entry<String, Object> field : partial.entrySet()) {
+            Object previous = merged.get(field.getKey());
+            if (previous instanceof Map && field.getValue() instanceof Map) {
+                merged.put(field.getKey(), merge((Map<String, Object>) previous, (Map<String, Object>) field.getValue()));
+            } else {
+                merged.put(field.getKey(), field.getValue());
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Numbers are compared by value, the parsed source and the flow payload do not use the same number types
+     */
+    private static boolean sameValue(Object previous, Object value) {
+        if (previous instanceof Number && value instanceof Number) {
+            return new BigDecimal(previous.toString()).compareTo(new BigDecimal(value.toString())) == 0;
+        }
+        return Objects.equals(previous, value);
+    }
+}
@@ -9,6 +9,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.KeyStore;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.net.ssl.SSLContext;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
@@ -21,8 +23,26 @@ import org.apache.http.ssl.SSLContexts;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.mule.extension.elastic.internal.bulk.AdaptiveBulkController;
+import org.mule.extension.elastic.internal.bulk.BulkBufferPool;
+import org.mule.extension.elastic.internal.bulk.DeleteBatcher;
+import org.mule.extension.elastic.internal.bulk.ShardRouter;
+import org.mule.extension.elastic.internal.bulk.WriteCoalescer;
+import org.mule.extension.elastic.internal.connection.provider.configuration.AdaptiveBulkConfiguration;
+import org.mule.extension.elastic.internal.connection.provider.configuration.ChangeDetectionConfiguration;
+import org.mule.extension.elastic.internal.connection.provider.configuration.DeleteBatchingConfiguration;
+import org.mule.extension.elastic.internal.connection.provider.configuration.HedgingConfiguration;
+import org.mule.extension.elastic.internal.connection.provider.configuration.RefreshCoordinationConfiguration;
+import org.mule.extension.elastic.internal.connection.provider.configuration.SlowQueryLogConfiguration;
+import org.mule.extension.elastic.internal.connection.provider.configuration.WriteCoalescingConfiguration;
 import org.mule.extension.elastic.internal.error.ElasticsearchError;
 import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
+import org.mule.extension.elastic.internal.spool.WriteBehindDrainer;
+import org.mule.extension.elastic.internal.spool.WriteBehindJournal;
+import org.mule.extension.elastic.internal.spool.WriteBehindSpool;
+import org.mule.runtime.api.scheduler.Scheduler;
+import org.mule.runtime.api.scheduler.SchedulerConfig;
+import org.mule.runtime.api.scheduler.SchedulerService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,6 +55,30 @@ public final class ElasticsearchConnection {
 
     private static final Logger logger = LoggerFactory.getLogger(ElasticsearchConnection.class);
     private RestHighLevelClient client;
+    private HedgingConfiguration hedgingConfiguration;
+    private HedgedRequestExecutor hedgedRequestExecutor;
+    private SlowQueryLogConfiguration slowQueryLogConfiguration;
+    private SlowQueryLog slowQueryLog;
+    private final StoredScriptRegistry storedScriptRegistry = new StoredScriptRegistry();
+    private final BulkLoadRegistry bulkLoadRegistry = new BulkLoadRegistry();
+    private final BulkBufferPool bulkBufferPool = new BulkBufferPool();
+    private TaskPoller taskPoller;
+    private WriteBehindSpool writeBehindSpool;
+    private ChangeDetectionConfiguration changeDetectionConfiguration;
+    private ContentHashIndex contentHashIndex;
+    private DocumentSourceCache documentSourceCache;
+    private AdaptiveBulkController adaptiveBulkController;
+    private String scheme = "http";
+    private RestClientBuilder.HttpClientConfigCallback httpClientConfigCallback;
+    private ShardRouter shardRouter;
+    private WriteCoalescingConfiguration writeCoalescingConfiguration;
+    private WriteCoalescer writeCoalescer;
+    private DeleteBatchingConfiguration deleteBatchingConfiguration;
+    private DeleteBatcher deleteBatcher;
+    private RefreshCoordinationConfiguration refreshCoordinationConfiguration;
+    private RefreshCoordinator refreshCoordinator;
+    private SchedulerService schedulerService;
+    private Scheduler scheduler;
 
     public ElasticsearchConnection(String host, int port) {
         logger.info("Using host:" + host + " and port:" + port);
@@ -45,13 +89,14 @@ public final class ElasticsearchConnection {
         logger.info("Using host:" + host + " port:" + port + " and user:" + username);
         final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
         credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
-        RestClientBuilder builder = RestClient.builder(new HttpHost(host, port)).setHttpClientConfigCallback(new RestClientBuilder.HttpClientConfigCallback() {
+        this.httpClientConfigCallback = new RestClientBuilder.HttpClientConfigCallback() {
 
             @Override
             public HttpAsyncClientBuilder customizeHttpClient(HttpAsyncClientBuilder httpClientBuilder) {
                 return httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
             }
-        });
+        };
+        RestClientBuilder builder = RestClient.builder(new HttpHost(host, port)).setHttpClientConfigCallback(this.httpClientConfigCallback);
         this.client = new RestHighLevelClient(builder);
     }
 
@@ -66,7 +111,8 @@ public final class ElasticsearchConnection {
             }
             SSLContextBuilder sslBuilder = SSLContexts.custom().loadTrustMaterial(truststore, null);
             SSLContext sslContext = sslBuilder.build();
-            RestClientBuilder builder = RestClient.builder(new HttpHost(host, port, "https")).setHttpClientConfigCallback(new RestClientBuilder.HttpClientConfigCallback() {
+            this.scheme = "https";
+            this.httpClientConfigCallback = new RestClientBuilder.HttpClientConfigCallback() {
 
                 @Override
                 public HttpAsyncClientBuilder customizeHttpClient(HttpAsyncClientBuilder httpClientBuilder) {
@@ -78,7 +124,8 @@ public final class ElasticsearchConnection {
                         return httpClientBuilder.setSSLContext(sslContext);
                     }
                 }
-            });
+            };
+            RestClientBuilder builder = RestClient.builder(new HttpHost(host, port, "https")).setHttpClientConfigCallback(this.httpClientConfigCallback);
 
             this.client = new RestHighLevelClient(builder);
         } catch (Exception e) {
@@ -90,8 +137,311 @@ public final class ElasticsearchConnection {
         return this.client;
     }
 
+    /**
+     * Configure the policy used by the operations that opt in to request hedging
+     * 
+     * @param hedgingConfiguration
+     *            Hedging policy parameters
+     */
+    public void configureHedging(HedgingConfiguration hedgingConfiguration) {
+        this.hedgingConfiguration = hedgingConfiguration;
+    }
+
+    /**
+     * @return The executor of the hedged requests, created on first use
+     */
+    public synchronized HedgedRequestExecutor getHedgedRequestExecutor() {
+        if (this.hedgedRequestExecutor == null) {
+            this.hedgedRequestExecutor = new HedgedRequestExecutor(this.client.getLowLevelClient(), this.hedgingConfiguration, getScheduler());
+        }
+        return this.hedgedRequestExecutor;
+    }
+
+    /**
+     * Enable the client side slow query log when a log file is configured
+     * 
+     * @param slowQueryLogConfiguration
+     *            Slow query log parameters
+     */
+    public void configureSlowQueryLog(SlowQueryLogConfiguration slowQueryLogConfiguration) {
+        this.slowQueryLogConfiguration = slowQueryLogConfiguration;
+    }
+
+    /**
+     * @return The slow query log created on first use, or null when it is disabled
+     */
+    public synchronized SlowQueryLog getSlowQueryLog() {
+        if (this.slowQueryLog == null && this.slowQueryLogConfiguration.getSlowQueryLogFile() != null) {
+            this.slowQueryLog = new SlowQueryLog(this.client, this.slowQueryLogConfiguration, getScheduler());
+        }
+        return this.slowQueryLog;
+    }
+
+    /**
+     * @param schedulerService
+     *            Mule scheduler service running the background tasks of the connection
+     */
+    public void configureScheduling(SchedulerService schedulerService) {
+        this.schedulerService = schedulerService;
+    }
+
+    /**
+     * @return The scheduler running the background tasks of the connection, created on first use
+     */
+    public synchronized Scheduler getScheduler() {
+        if (this.scheduler == null) {
+            this.scheduler = this.schedulerService.ioScheduler(SchedulerConfig.config().withName("elasticsearch-connection"));
+        }
+        return this.scheduler;
+    }
+
+    /**
+     * @param writeBehindSpool
+     *            Write-behind spool of the connection configuration, or null when no spool directory is configured
+     */
+    public void configureWriteBehind(WriteBehindSpool writeBehindSpool) {
+        this.writeBehindSpool = writeBehindSpool;
+    }
+
+    /**
+     * @return The write-behind journal, opened and drained through this connection on first use, or null when write-behind is disabled
+     */
+    public WriteBehindJournal getWriteBehindJournal() {
+        if (this.writeBehindSpool == null) {
+            return null;
+        }
+        try {
+            return this.writeBehindSpool.open(this.client.getLowLevelClient(), getScheduler());
+        } catch (IOException e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    /**
+     * @return The drainer of the write-behind journal, or null while the journal was not opened
+     */
+    public WriteBehindDrainer getWriteBehindDrainer() {
+        return this.writeBehindSpool != null ? this.writeBehindSpool.getDrainer() : null;
+    }
+
+    public void configureChangeDetection(ChangeDetectionConfiguration changeDetectionConfiguration) {
+        this.changeDetectionConfiguration = changeDetectionConfiguration;
+    }
+
+    /**
+     * @return The content hash index of the operations skipping unchanged writes, created on first use
+     */
+    public synchronized ContentHashIndex getContentHashIndex() {
+        if (this.contentHashIndex == null) {
+            String file = this.changeDetectionConfiguration.getHashIndexFile();
+            try {
+                this.contentHashIndex = new ContentHashIndex(file != null ? Paths.get(file) : null, this.changeDetectionConfiguration.getHashIndexCapacity());
+            } catch (IOException e) {
+                throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+            }
+        }
+        return this.contentHashIndex;
+    }
+
+    /**
+     * Forget the recorded content of the documents of deleted or recreated indices, so their next write is not skipped. The index is opened when it is persisted, as it
+     * may hold documents written before a restart.
+     * 
+     * @param indices
+     *            Index name or comma separated list of index names
+     */
+    public void invalidateContentHashes(String indices) {
+        ContentHashIndex hashIndex = getActiveContentHashIndex();
+        if (hashIndex != null) {
+            hashIndex.invalidate(indices);
+        }
+    }
+
+    /**
+     * Forget the recorded content of a document written without comparing its content, so the next write skipping unchanged documents is sent
+     * 
+     * @param index
+     *            Index name
+     * @param type
+     *            Type name
+     * @param id
+     *            Document id, or null for a document whose id is generated by Elasticsearch
+     */
+    public void forgetContentHash(String index, String type, String id) {
+        ContentHashIndex hashIndex = getActiveContentHashIndex();
+        if (hashIndex != null && id != null) {
+            hashIndex.remove(ContentHashIndex.key(index, type, id));
+        }
+    }
+
+    /**
+     * @return The content hash index when it may hold recorded documents, null while no write skipping unchanged documents was made and the index is not persisted
+     */
+    public synchronized ContentHashIndex getActiveContentHashIndex() {
+        if (this.contentHashIndex == null && this.changeDetectionConfiguration.getHashIndexFile() == null) {
+            return null;
+        }
+        return getContentHashIndex();
+    }
+
+    /**
+     * @return The last known document sources of the delta updates, created on first use
+     */
+    public synchronized DocumentSourceCache getDocumentSourceCache() {
+        if (this.documentSourceCache == null) {
+            this.documentSourceCache = new DocumentSourceCache(this.changeDetectionConfiguration.getDocumentCacheSize());
+        }
+        return this.documentSourceCache;
+    }
+
+    /**
+     * Create the bulk size controller shared by the bulk operations that opt in to adaptive sizing
+     * 
+     * @param adaptiveBulkConfiguration
+     *            Bulk size and concurrency bounds
+     */
+    public void configureAdaptiveBulk(AdaptiveBulkConfiguration adaptiveBulkConfiguration) {
+        this.adaptiveBulkController = new AdaptiveBulkController(adaptiveBulkConfiguration);
+    }
+
+    public AdaptiveBulkController getAdaptiveBulkController() {
+        return this.adaptiveBulkController;
+    }
+
+    public void configureWriteCoalescing(WriteCoalescingConfiguration writeCoalescingConfiguration) {
+        this.writeCoalescingConfiguration = writeCoalescingConfiguration;
+    }
+
+    /**
+     * @return The buffer merging the coalesced writes, created on first use
+     */
+    public synchronized WriteCoalescer getWriteCoalescer() {
+        if (this.writeCoalescer == null) {
+            this.writeCoalescer = new WriteCoalescer(this.client.getLowLevelClient(), this.writeCoalescingConfiguration, getScheduler());
+        }
+        return this.writeCoalescer;
+    }
+
+    public void configureDeleteBatching(DeleteBatchingConfiguration deleteBatchingConfiguration) {
+        this.deleteBatchingConfiguration = deleteBatchingConfiguration;
+    }
+
+    /**
+     * @return The batcher of the delete operations that opt in to batching, created on first use
+     */
+    public synchronized DeleteBatcher getDeleteBatcher() {
+        if (this.deleteBatcher == null) {
+            this.deleteBatcher = new DeleteBatcher(this.client.getLowLevelClient(), this.deleteBatchingConfiguration, getScheduler());
+        }
+        return this.deleteBatcher;
+    }
+
+    public void configureRefreshCoordination(RefreshCoordinationConfiguration refreshCoordinationConfiguration) {
+        this.refreshCoordinationConfiguration = refreshCoordinationConfiguration;
+    }
+
+    /**
+     * @return The coordinator of the refreshes requested by the writes waiting for visibility, created on first use
+     */
+    public synchronized RefreshCoordinator getRefreshCoordinator() {
+        if (this.refreshCoordinator == null) {
+            this.refreshCoordinator = new RefreshCoordinator(this.client.getLowLevelClient(), this.refreshCoordinationConfiguration, getScheduler());
+        }
+        return this.refreshCoordinator;
+    }
+
+    /**
+     * @return The routing table cache of the shard-aware bulk operations, created on first use
+     */
+    public synchronized ShardRouter getShardRouter() {
+        if (this.shardRouter == null) {
+            this.shardRouter = new ShardRouter(this.client.getLowLevelClient(), this.scheme, this.httpClientConfigCallback);
+        }
+        return this.shardRouter;
+    }
+
+    public BulkBufferPool getBulkBufferPool() {
+        return this.bulkBufferPool;
+    }
+
+    public StoredScriptRegistry getStoredScriptRegistry() {
+        return this.storedScriptRegistry;
+    }
+
+    public BulkLoadRegistry getBulkLoadRegistry() {
+        return this.bulkLoadRegistry;
+    }
+
+    /**
+     * @return The poller completing the operations waiting for a background task, created on first use
+     */
+    public synchronized TaskPoller getTaskPoller() {
+        if (this.taskPoller == null) {
+            this.taskPoller = new TaskPoller(this.client.getLowLevelClient(), getScheduler());
+        }
+        return this.taskPoller;
+    }
+
+    /**
+     * A step of the shutdown of the connection
+     */
+    private interface ShutdownStep {
+
+        void run() throws Exception;
+    }
+
+    /**
+     * Run a shutdown step, a failing step is logged and does not prevent the next ones
+     */
+    private static void shutdown(String component, ShutdownStep step) {
+        try {
+            step.run();
+        } catch (Exception e) {
+            logger.warn("Shutdown of the " + component + " failed: " + e.getMessage(), e);
+        }
+    }
+
     public void invalidate() throws IOException {
-        this.client.close();
+        // the steps run outside the monitor, the write coalescer waits for its last bulk and must not block the getters meanwhile
+        Map<String, ShutdownStep> steps = new LinkedHashMap<>();
+        synchronized (this) {
+            // the buffered writes are sent first, while the scheduler and the client are still open
+            if (this.writeCoalescer != null) {
+                steps.put("write coalescer", this.writeCoalescer::shutdown);
+            }
+            if (this.deleteBatcher != null) {
+                steps.put("delete batcher", this.deleteBatcher::shutdown);
+            }
+            if (this.refreshCoordinator != null) {
+                steps.put("refresh coordinator", this.refreshCoordinator::shutdown);
+            }
+            if (this.slowQueryLog != null) {
+                steps.put("slow query log", this.slowQueryLog::shutdown);
+            }
+            if (this.taskPoller != null) {
+                steps.put("task poller", this.taskPoller::shutdown);
+            }
+            if (this.writeBehindSpool != null) {
+                RestClient lowLevelClient = this.client.getLowLevelClient();
+                steps.put("write-behind drainer", () -> this.writeBehindSpool.release(lowLevelClient));
+            }
+            if (this.contentHashIndex != null) {
+                steps.put("content hash index", this.contentHashIndex::close);
+            }
+            if (this.shardRouter != null) {
+                steps.put("shard router", this.shardRouter::close);
+            }
+            if (this.scheduler != null) {
+                steps.put("scheduler", this.scheduler::stop);
+            }
+        }
+        try {
+            for (Map.Entry<String, ShutdownStep> step : steps.entrySet()) {
+                shutdown(step.getKey(), step.getValue());
+            }
+        } finally {
+            this.client.close();
+        }
         logger.info("Connection invalidated......!");
     }
 }
@@ -0,0 +1,274 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.mule.extension.elastic.internal.connection.provider.configuration.HedgingConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Sends a duplicate (hedged) request to another data node when the first request has not answered within the configured latency percentile. The first
+ *         request is pinned to a data node, so that the hedge never lands on the same node. The first successful response wins. The Elasticsearch 6.2 client
+ *         cannot abort an in-flight request, so the response of the losing request is discarded.
+ *
+ *         The data nodes are listed on the connection scheduler, never on the thread of the request. Until the first listing completes, requests are sent
+ *         without a preference and are not hedged.
+ */
+public class HedgedRequestExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgedRequestExecutor.class);
+
+    private static final int SAMPLE_WINDOW = 1024;
+    private static final int MIN_SAMPLES = 32;
+    private static final double MAX_BUDGET_TOKENS = 10;
+    private static final long NODE_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * A request that can be sent with a given search preference
+     */
+    public interface HedgedCall<T> {
+
+        void execute(String preference, ActionListener<T> listener);
+    }
+
+    private final RestClient lowLevelClient;
+    private final ScheduledExecutorService scheduler;
+    private final int percentile;
+    private final long minDelay;
+    private final double budgetRatio;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final AtomicInteger nodeCursor = new AtomicInteger();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private double budgetTokens;
+    private volatile List<String> dataNodes = Collections.emptyList();
+    private volatile long nodesRefreshedAt;
+
+    public HedgedRequestExecutor(RestClient lowLevelClient, HedgingConfiguration configuration, ScheduledExecutorService scheduler) {
+        this.lowLevelClient = lowLevelClient;
+        this.scheduler = scheduler;
+        this.percentile = Math.max(1, Math.min(99, configuration.getHedgeDelayPercentile()));
+        this.minDelay = configuration.getMinHedgeDelay();
+        this.budgetRatio = configuration.getHedgeBudget() / 100.0;
+        scheduleNodeRefresh();
+    }
+
+    /**
+     * Execute the call, hedging it to another data node if it is slower than the configured percentile
+     *
+     * @param operation
+     *            Operation name the latency statistics are kept for
+     * @param call
+     *            The request to execute
+     * @return The first successful response
+     * @throws Exception
+     *             If both the original and the hedged request failed
+     */
+    public <T> T execute(String operation, HedgedCall<T> call) throws Exception {
+        LatencyWindow window = latencies.computeIfAbsent(operation, key -> new LatencyWindow());
+        depositBudget();
+
+        String[] nodes = nextNodes();
+        long start = System.nanoTime();
+        CompletableFuture<T> primary = send(call, nodes == null ? null : "_prefer_nodes:" + nodes[0]);
+        primary.whenComplete((response, failure) -> {
+            if (failure == null) {
+                window.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        });
+
+        try {
+            return primary.get(window.delay(percentile, minDelay), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // fall through and hedge
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+
+        if (nodes == null || !tryAcquireBudget()) {
+            return await(primary);
+        }
+
+        logger.debug("Hedging " + operation + " request from node " + nodes[0] + " to node " + nodes[1]);
+        CompletableFuture<T> hedge = send(call, "_prefer_nodes:" + nodes[1]);
+        return await(firstSuccessful(primary, hedge));
+    }
+
+    private <T> CompletableFuture<T> send(HedgedCall<T> call, String preference) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            call.execute(preference, new ActionListener<T>() {
+
+                @Override
+                public void onResponse(T response) {
+                    future.complete(response);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<T> future : Arrays.asList(first, second)) {
+            future.whenComplete((response, failure) -> {
+                if (failure == null) {
+                    result.complete(response);
+                } else if (failures.incrementAndGet() == 2) {
+                    result.completeExceptionally(failure);
+                }
+            });
+        }
+        return result;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        return e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+
+    private synchronized void depositBudget() {
+        budgetTokens = Math.min(MAX_BUDGET_TOKENS, budgetTokens + budgetRatio);
+    }
+
+    private synchronized boolean tryAcquireBudget() {
+        if (budgetTokens >= 1) {
+            budgetTokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Round robin over the data nodes of the cluster. Returns the node the request is pinned to and the node it is hedged to, or null when fewer than two data
+     * nodes are known, as there is nowhere else to hedge to.
+     */
+    private String[] nextNodes() {
+        if (System.currentTimeMillis() - nodesRefreshedAt > NODE_REFRESH_INTERVAL) {
+            scheduleNodeRefresh();
+        }
+        List<String> nodes = dataNodes;
+        if (nodes.size() < 2) {
+            return null;
+        }
+        int cursor = nodeCursor.getAndIncrement();
+        return new String[] { nodes.get(Math.floorMod(cursor, nodes.size())), nodes.get(Math.floorMod(cursor + 1, nodes.size())) };
+    }
+
+    private void scheduleNodeRefresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.execute(this::refreshDataNodes);
+        } catch (RuntimeException e) {
+            refreshing.set(false);
+            logger.warn("Unable to schedule the refresh of the data nodes used for hedged requests: " + e.getMessage());
+        }
+    }
+
+    private void refreshDataNodes() {
+        try {
+            dataNodes = Collections.unmodifiableList(fetchDataNodes());
+        } catch (Exception e) {
+            logger.warn("Unable to refresh the data nodes used for hedged requests: " + e.getMessage());
+        } finally {
+            // a failed listing is retried after the refresh interval as well, rather than on every request
+            nodesRefreshedAt = System.currentTimeMillis();
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * @return The ids of the data nodes of the cluster
+     */
+    protected List<String> fetchDataNodes() throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put("format", "json");
+        params.put("full_id", "true");
+        params.put("h", "id,node.role");
+        Response response = lowLevelClient.performRequest("GET", "/_cat/nodes", params);
+        JSONArray nodes = (JSONArray) new JSONParser().parse(EntityUtils.toString(response.getEntity()));
+        List<String> ids = new ArrayList<>();
+        for (Object node : nodes) {
+            JSONObject nodeInfo = (JSONObject) node;
+            String roles = (String) nodeInfo.get("node.role");
+            if (roles != null && roles.contains("d")) {
+                ids.add((String) nodeInfo.get("id"));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Ring buffer of the most recent latencies of an operation
+     */
+    private static class LatencyWindow {
+
+        private final long[] samples = new long[SAMPLE_WINDOW];
+        private int count;
+        private int next;
+        private long cachedDelay = -1;
+
+        synchronized void record(long latency) {
+            samples[next] = latency;
+            next = (next + 1) % SAMPLE_WINDOW;
+            count = Math.min(count + 1, SAMPLE_WINDOW);
+            // recompute the percentile every 64 samples rather than on every request
+            if ((next & 63) == 0) {
+                cachedDelay = -1;
+            }
+        }
+
+        synchronized long delay(int percentile, long minDelay) {
+            if (count < MIN_SAMPLES) {
+                return Math.max(minDelay, 1);
+            }
+            if (cachedDelay < 0) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                cachedDelay = sorted[Math.min(count - 1, count * percentile / 100)];
+            }
+            return Math.max(minDelay, cachedDelay);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpPost;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.mule.extension.elastic.internal.connection.provider.configuration.RefreshCoordinationConfiguration;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Makes the writes visible to search with at most one refresh per index per interval, instead of one refresh per write. The writes waiting for visibility register
+ *         with the coordinator after they completed and are all released by the next refresh of their index.
+ */
+public class RefreshCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshCoordinator.class);
+
+    // the default socket timeout of the REST client, the longest a refresh request takes before failing
+    private static final long REFRESH_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private final RestClient lowLevelClient;
+    private final long minInterval;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, IndexRefresh> indices = new HashMap<>();
+    private boolean closed;
+
+    public RefreshCoordinator(RestClient lowLevelClient, RefreshCoordinationConfiguration configuration, ScheduledExecutorService scheduler) {
+        this.lowLevelClient = lowLevelClient;
+        this.scheduler = scheduler;
+        this.minInterval = Math.max(0, configuration.getMinRefreshInterval());
+    }
+
+    /**
+     * Refresh state of an index: the writes waiting for the next refresh and the time of the last one
+     */
+    private static class IndexRefresh {
+
+        private List<CompletableFuture<Void>> waiting = new ArrayList<>();
+        private boolean scheduled;
+        private long lastRefresh;
+    }
+
+    /**
+     * Request the visibility of the completed writes of an index
+     *
+     * @param index
+     *            Index, alias or comma separated list of indices written to
+     * @return Completed once a refresh started after the request completed
+     */
+    public synchronized CompletableFuture<Void> awaitRefresh(String index) {
+        if (closed) {
+            CompletableFuture<Void> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new IllegalStateException("Connection closed before the refresh"));
+            return rejected;
+        }
+        IndexRefresh state = indices.computeIfAbsent(index, key -> new IndexRefresh());
+        CompletableFuture<Void> refreshed = new CompletableFuture<>();
+        state.waiting.add(refreshed);
+        if (!state.scheduled) {
+            long delay = Math.max(0, state.lastRefresh + minInterval - System.currentTimeMillis());
+            try {
+                scheduler.schedule(() -> refresh(index, state), delay, TimeUnit.MILLISECONDS);
+                state.scheduled = true;
+            } catch (RejectedExecutionException e) {
+                // the connection is closing, no refresh will release the waiting writes
+                for (CompletableFuture<Void> waiting : state.waiting) {
+                    waiting.completeExceptionally(e);
+                }
+                state.waiting.clear();
+            }
+        }
+        return refreshed;
+    }
+
+    /**
+     * @return The longest time in milliseconds a write waits for its refresh: the minimum interval between refreshes and the refresh request itself
+     */
+    public long getMaxWait() {
+        return minInterval + REFRESH_TIMEOUT;
+    }
+
+    private void refresh(String index, IndexRefresh state) {
+        List<CompletableFuture<Void>> released;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            released = state.waiting;
+            state.waiting = new ArrayList<>();
+            state.scheduled = false;
+            state.lastRefresh = System.currentTimeMillis();
+        }
+        lowLevelClient.performRequestAsync(HttpPost.METHOD_NAME, "/" + index + "/_refresh", new ResponseListener() {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void onSuccess(Response response) {
+                Map<String, Object> shards;
+                try {
+                    shards = (Map<String, Object>) ElasticsearchUtils.responseToMap(response).get("_shards");
+                } catch (Exception e) {
+                    onFailure(e);
+                    return;
+                }
+                // a shard whose refresh failed does not expose the writes, the request itself still succeeds
+                Number failed = shards != null ? (Number) shards.get("failed") : null;
+                if (failed != null && failed.intValue() > 0) {
+                    onFailure(new IOException("Refresh of " + index + " failed on " + failed + " of " + shards.get("total") + " shards: " + shards.get("failures")));
+                    return;
+                }
+                logger.debug("Refreshed " + index + " for " + released.size() + " writes");
+                for (CompletableFuture<Void> refreshed : released) {
+                    refreshed.complete(null);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                logger.warn("Refresh of " + index + " failed: " + e.getMessage());
+                for (CompletableFuture<Void> refreshed : released) {
+                    refreshed.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Release the waiting writes with an error, the refreshes already scheduled are not sent
+     */
+    public synchronized void shutdown() {
+        closed = true;
+        IllegalStateException error = new IllegalStateException("Connection closed before the refresh");
+        for (IndexRefresh state : indices.values()) {
+            for (CompletableFuture<Void> refreshed : state.waiting) {
+                refreshed.completeExceptionally(error);
+            }
+            state.waiting.clear();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.profile.ProfileResult;
+import org.elasticsearch.search.profile.ProfileShardResult;
+import org.elasticsearch.search.profile.query.CollectorResult;
+import org.elasticsearch.search.profile.query.QueryProfileShardResult;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.mule.extension.elastic.internal.connection.provider.configuration.SlowQueryLogConfiguration;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Records the searches exceeding the client latency or server took thresholds to a size rotated JSON lines file. A sample of the slow searches is re-executed in the
+ *         background with profiling enabled and the compact profile is written to the same log. The entries are handed to a writer running on the executor of the
+ *         connection, the thread of the search never waits for the file. When the writer falls behind by more than a bounded number of entries, the new entries are
+ *         dropped and counted.
+ */
+public class SlowQueryLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private static final int MAX_PENDING_ENTRIES = 1024;
+
+    private final RestHighLevelClient client;
+    private final Path logFile;
+    private final long clientLatencyThreshold;
+    private final long tookThreshold;
+    private final int profileSampleRate;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final Executor executor;
+    private final Queue<JSONObject> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    public SlowQueryLog(RestHighLevelClient client, SlowQueryLogConfiguration configuration, Executor executor) {
+        this.client = client;
+        this.executor = executor;
+        this.logFile = Paths.get(configuration.getSlowQueryLogFile());
+        this.clientLatencyThreshold = configuration.getClientLatencyThreshold();
+        this.tookThreshold = configuration.getTookThreshold();
+        this.profileSampleRate = configuration.getProfileSampleRate();
+        this.maxFileSize = configuration.getMaxFileSize() * 1024L * 1024L;
+        this.maxFiles = Math.max(1, configuration.getMaxFiles());
+    }
+
+    /**
+     * Log the search if it exceeded one of the thresholds
+     *
+     * @param searchRequest
+     *            The executed search request
+     * @param searchResponse
+     *            The search response
+     * @param clientLatency
+     *            Client measured latency in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    public void record(SearchRequest searchRequest, SearchResponse searchResponse, long clientLatency) {
+        long took = searchResponse.getTook().millis();
+        if (clientLatency < clientLatencyThreshold && took < tookThreshold) {
+            return;
+        }
+
+        JSONObject entry = new JSONObject();
+        entry.put("timestamp", System.currentTimeMillis());
+        entry.put("type", "slow_query");
+        entry.put("indices", Arrays.toString(searchRequest.indices()));
+        entry.put("client_latency_ms", clientLatency);
+        entry.put("took_ms", took);
+        entry.put("total_hits", searchResponse.getHits().getTotalHits());
+        entry.put("source", searchRequest.source() != null ? searchRequest.source().toString() : null);
+        write(entry);
+
+        boolean alreadyProfiled = searchRequest.source() != null && searchRequest.source().profile();
+        if (!alreadyProfiled && searchRequest.source() != null && ThreadLocalRandom.current().nextInt(100) < profileSampleRate) {
+            profile(searchRequest);
+        }
+    }
+
+    /**
+     * Re-execute a copy of the search with profiling enabled in the background. The copy has no scroll, so profiling a scroll search does not open a second search context.
+     */
+    private void profile(SearchRequest searchRequest) {
+        SearchSourceBuilder profiledSource = searchRequest.source().copyWithNewSlice(searchRequest.source().slice()).profile(true);
+        SearchRequest profiledRequest = new SearchRequest(searchRequest.indices(), profiledSource).types(searchRequest.types())
+                .routing(searchRequest.routing())
+                .preference(searchRequest.preference())
+                .searchType(searchRequest.searchType())
+                .indicesOptions(searchRequest.indicesOptions());
+        client.searchAsync(profiledRequest, new ActionListener<SearchResponse>() {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void onResponse(SearchResponse response) {
+                JSONObject entry = new JSONObject();
+                entry.put("timestamp", System.currentTimeMillis());
+                entry.put("type", "profile");
+                entry.put("indices", Arrays.toString(profiledRequest.indices()));
+                entry.put("took_ms", response.getTook().millis());
+                entry.put("source", profiledSource.toString());
+                entry.put("shards", compactProfile(response.getProfileResults()));
+                write(entry);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                logger.warn("Profiling of slow query failed: " + e.getMessage());
+            }
+        }, ElasticsearchUtils.getContentTypeJsonHeader());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject compactProfile(Map<String, ProfileShardResult> profileResults) {
+        JSONObject shards = new JSONObject();
+        if (profileResults == null) {
+            return shards;
+        }
+        for (Map.Entry<String, ProfileShardResult> shard : profileResults.entrySet()) {
+            JSONArray searches = new JSONArray();
+            for (QueryProfileShardResult search : shard.getValue().getQueryProfileResults()) {
+                JSONObject compactSearch = new JSONObject();
+                JSONArray queries = new JSONArray();
+                for (ProfileResult query : search.getQueryResults()) {
+                    queries.add(compactQuery(query));
+                }
+                compactSearch.put("queries", queries);
+                CollectorResult collector = search.getCollectorResult();
+                if (collector != null) {
+                    compactSearch.put("collector", collector.getName() + " (" + collector.getReason() + ") " + collector.getTime() + "ns");
+                }
+                compactSearch.put("rewrite_time_ns", search.getRewriteTime());
+                searches.add(compactSearch);
+            }
+            shards.put(shard.getKey(), searches);
+        }
+        return shards;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject compactQuery(ProfileResult query) {
+        JSONObject compact = new JSONObject();
+        compact.put("type", query.getQueryName());
+        compact.put("description", query.getLuceneDescription());
+        compact.put("time_ns", query.getTime());
+        if (!query.getProfiledChildren().isEmpty()) {
+            JSONArray children = new JSONArray();
+            for (ProfileResult child : query.getProfiledChildren()) {
+                children.add(compactQuery(child));
+            }
+            compact.put("children", children);
+        }
+        return compact;
+    }
+
+    /**
+     * Queue the entry and start the writer if it is not running
+     */
+    private void write(JSONObject entry) {
+        if (pendingCount.incrementAndGet() > MAX_PENDING_ENTRIES) {
+            pendingCount.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        pending.add(entry);
+        if (writing.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // the connection is closing, the entries are written by the shutdown
+                writing.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        do {
+            writePending();
+            writing.set(false);
+            // an entry queued after the last poll and before the flag was cleared started no writer
+        } while (!pending.isEmpty() && writing.compareAndSet(false, true));
+    }
+
+    private synchronized void writePending() {
+        int lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            logger.warn("Dropped " + lost + " slow query log entries, the log writer fell behind");
+        }
+        JSONObject entry;
+        while ((entry = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            byte[] line = (entry.toJSONString() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+            try {
+                if (Files.exists(logFile) && Files.size(logFile) + line.length > maxFileSize) {
+                    rotate();
+                }
+                Files.write(logFile, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                logger.warn("Unable to write the slow query log " + logFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Write the queued entries on the calling thread
+     */
+    public void shutdown() {
+        writePending();
+    }
+
+    private void rotate() throws IOException {
+        Files.deleteIfExists(rotated(maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            if (Files.exists(rotated(i))) {
+                Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(logFile, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path rotated(int generation) {
+        return logFile.resolveSibling(logFile.getFileName() + "." + generation);
+    }
+}
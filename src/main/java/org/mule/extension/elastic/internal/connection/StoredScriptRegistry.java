@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Keeps track of the scripts stored through this connection, so a script is uploaded and compiled once and afterwards referenced only by its id. Search templates
+ *         are stored scripts in the mustache language and share the ids of the other scripts, so both are tracked by the same registry.
+ */
+public class StoredScriptRegistry {
+
+    private final Map<String, List<String>> storedScripts = new ConcurrentHashMap<>();
+
+    /**
+     * @param id
+     *            Script id
+     * @param lang
+     *            Script language
+     * @param source
+     *            Script source
+     * @return true if this exact script was already stored under the id
+     */
+    public boolean isStored(String id, String lang, String source) {
+        return Arrays.asList(lang, source).equals(storedScripts.get(id));
+    }
+
+    public void stored(String id, String lang, String source) {
+        storedScripts.put(id, Arrays.asList(lang, source));
+    }
+
+    public void removed(String id) {
+        storedScripts.remove(id);
+    }
+}
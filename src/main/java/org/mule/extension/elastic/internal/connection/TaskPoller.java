@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.mule.extension.elastic.internal.error.ElasticsearchError;
+import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
+import org.mule.runtime.api.metadata.MediaType;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.mule.runtime.extension.api.runtime.process.CompletionCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Polls the tasks API until a background task completed and then completes the operation callback. Polls are sent asynchronously and scheduled on the connection
+ *         scheduler, so no thread is held while a task is running.
+ */
+public class TaskPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskPoller.class);
+
+    private final RestClient lowLevelClient;
+    private final ScheduledExecutorService scheduler;
+    // callbacks of the tasks still running, failed when the connection closes
+    private final Map<CompletionCallback<String, StatusLine>, String> waiting = new IdentityHashMap<>();
+    private boolean closed;
+
+    public TaskPoller(RestClient lowLevelClient, ScheduledExecutorService scheduler) {
+        this.lowLevelClient = lowLevelClient;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Complete the callback with the task result once the task completed
+     * 
+     * @param taskId
+     *            Id of the task, node id and task number separated by a colon
+     * @param pollInterval
+     *            Interval in milliseconds between two polls
+     * @param callback
+     *            Operation callback
+     */
+    public void awaitCompletion(String taskId, long pollInterval, CompletionCallback<String, StatusLine> callback) {
+        synchronized (this) {
+            if (closed) {
+                callback.error(new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, new IOException("Connection closed while waiting for task " + taskId)));
+                return;
+            }
+            waiting.put(callback, taskId);
+        }
+        poll(taskId, pollInterval, callback);
+    }
+
+    private void poll(String taskId, long pollInterval, CompletionCallback<String, StatusLine> callback) {
+        lowLevelClient.performRequestAsync(HttpGet.METHOD_NAME, "/_tasks/" + taskId, Collections.emptyMap(), new ResponseListener() {
+
+            @Override
+            public void onSuccess(Response response) {
+                try {
+                    String body = EntityUtils.toString(response.getEntity());
+                    Map<String, Object> task = XContentHelper.convertToMap(XContentType.JSON.xContent(), body, false);
+                    if (!Boolean.TRUE.equals(task.get("completed"))) {
+                        logProgress(taskId, task);
+                        schedule(taskId, pollInterval, callback);
+                    } else if (task.get("error") != null) {
+                        error(callback, new IOException("Task " + taskId + " failed: " + task.get("error")));
+                    } else if (!failures(task).isEmpty()) {
+                        error(callback, new IOException("Task " + taskId + " completed with failures: " + failures(task)));
+                    } else if (completed(callback)) {
+                        callback.success(Result.<String, StatusLine>builder()
+                                .output(body)
+                                .attributes(response.getStatusLine())
+                                .mediaType(MediaType.APPLICATION_JSON)
+                                .build());
+                    }
+                } catch (Exception e) {
+                    error(callback, e);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                error(callback, e);
+            }
+        });
+    }
+
+    private void schedule(String taskId, long pollInterval, CompletionCallback<String, StatusLine> callback) {
+        try {
+            scheduler.schedule(() -> {
+                if (isWaiting(callback)) {
+                    poll(taskId, pollInterval, callback);
+                }
+            }, pollInterval, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            error(callback, e);
+        }
+    }
+
+    private synchronized boolean isWaiting(CompletionCallback<String, StatusLine> callback) {
+        return waiting.containsKey(callback);
+    }
+
+    /**
+     * @return Whether the callback was still waiting, a callback is completed once
+     */
+    private synchronized boolean completed(CompletionCallback<String, StatusLine> callback) {
+        return waiting.remove(callback) != null;
+    }
+
+    private void error(CompletionCallback<String, StatusLine> callback, Exception e) {
+        if (completed(callback)) {
+            callback.error(new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e));
+        }
+    }
+
+    /**
+     * @return The bulk and search failures of a completed by-query or reindex task, the tasks stop at the first failures
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Object> failures(Map<String, Object> task) {
+        if (task.get("response") instanceof Map) {
+            Object failures = ((Map<String, Object>) task.get("response")).get("failures");
+            if (failures instanceof List) {
+                return (List<Object>) failures;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void logProgress(String taskId, Map<String, Object> task) {
+        if (!logger.isDebugEnabled() || !(task.get("task") instanceof Map)) {
+            return;
+        }
+        Object status = ((Map<String, Object>) task.get("task")).get("status");
+        if (status instanceof Map) {
+            Map<String, Object> progress = (Map<String, Object>) status;
+            logger.debug("Task " + taskId + " : total=" + progress.get("total") + " created=" + progress.get("created") + " updated=" + progress.get("updated")
+                    + " deleted=" + progress.get("deleted") + " version_conflicts=" + progress.get("version_conflicts"));
+        }
+    }
+
+    /**
+     * Stop polling and fail the callbacks of the tasks still running, the tasks themselves keep running in the cluster
+     */
+    public void shutdown() {
+        Map<CompletionCallback<String, StatusLine>, String> failed;
+        synchronized (this) {
+            closed = true;
+            failed = new IdentityHashMap<>(waiting);
+            waiting.clear();
+        }
+        for (Map.Entry<CompletionCallback<String, StatusLine>, String> entry : failed.entrySet()) {
+            entry.getKey().error(new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, new IOException("Connection closed while waiting for task " + entry.getValue())));
+        }
+    }
+}
@@ -4,14 +4,29 @@
 package org.mule.extension.elastic.internal.connection.provider;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+
+import javax.inject.Inject;
 
 import org.apache.http.HttpHeaders;
 import org.apache.http.message.BasicHeader;
 import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
+import org.mule.extension.elastic.internal.connection.provider.configuration.AdaptiveBulkConfiguration;
+import org.mule.extension.elastic.internal.connection.provider.configuration.ChangeDetectionConfiguration;
+import org.mule.extension.elastic.internal.connection.provider.configuration.DeleteBatchingConfiguration;
+import org.mule.extension.elastic.internal.connection.provider.configuration.HedgingConfiguration;
+import org.mule.extension.elastic.internal.connection.provider.configuration.RefreshCoordinationConfiguration;
+import org.mule.extension.elastic.internal.connection.provider.configuration.SlowQueryLogConfiguration;
+import org.mule.extension.elastic.internal.connection.provider.configuration.WriteBehindConfiguration;
+import org.mule.extension.elastic.internal.connection.provider.configuration.WriteCoalescingConfiguration;
+import org.mule.extension.elastic.internal.spool.WriteBehindSpool;
 import org.mule.runtime.api.connection.CachedConnectionProvider;
 import org.mule.runtime.api.connection.ConnectionValidationResult;
+import org.mule.runtime.api.lifecycle.Disposable;
+import org.mule.runtime.api.scheduler.SchedulerService;
 import org.mule.runtime.extension.api.annotation.param.Optional;
 import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.ParameterGroup;
 import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
 import org.mule.runtime.extension.api.annotation.param.display.Placement;
 import org.mule.runtime.extension.api.annotation.param.display.Summary;
@@ -21,7 +36,7 @@ import org.slf4j.LoggerFactory;
 /**
  * @author Great Software Laboratory Pvt. Ltd.
  */
-public abstract class ElasticsearchBaseConnectionProvider implements CachedConnectionProvider<ElasticsearchConnection> {
+public abstract class ElasticsearchBaseConnectionProvider implements CachedConnectionProvider<ElasticsearchConnection>, Disposable {
 
     private static final Logger logger = LoggerFactory.getLogger(ElasticsearchBaseConnectionProvider.class);
 
@@ -38,6 +53,43 @@ public abstract class ElasticsearchBaseConnectionProvider implements CachedConne
     @Summary("ElasticSearch instance port")
     private int port;
 
+    @ParameterGroup(name = "Request Hedging")
+    @Placement(tab = "Advanced")
+    private HedgingConfiguration hedgingConfiguration;
+
+    @ParameterGroup(name = "Slow Query Log")
+    @Placement(tab = "Advanced")
+    private SlowQueryLogConfiguration slowQueryLogConfiguration;
+
+    @ParameterGroup(name = "Write Behind")
+    @Placement(tab = "Advanced")
+    private WriteBehindConfiguration writeBehindConfiguration;
+
+    @ParameterGroup(name = "Change Detection")
+    @Placement(tab = "Advanced")
+    private ChangeDetectionConfiguration changeDetectionConfiguration;
+
+    @ParameterGroup(name = "Adaptive Bulk")
+    @Placement(tab = "Advanced")
+    private AdaptiveBulkConfiguration adaptiveBulkConfiguration;
+
+    @ParameterGroup(name = "Write Coalescing")
+    @Placement(tab = "Advanced")
+    private WriteCoalescingConfiguration writeCoalescingConfiguration;
+
+    @ParameterGroup(name = "Delete Batching")
+    @Placement(tab = "Advanced")
+    private DeleteBatchingConfiguration deleteBatchingConfiguration;
+
+    @ParameterGroup(name = "Refresh Coordination")
+    @Placement(tab = "Advanced")
+    private RefreshCoordinationConfiguration refreshCoordinationConfiguration;
+
+    @Inject
+    private SchedulerService schedulerService;
+
+    private WriteBehindSpool writeBehindSpool;
+
     public String getHost() {
         return this.host;
     }
@@ -46,6 +98,49 @@ public abstract class ElasticsearchBaseConnectionProvider implements CachedConne
         return this.port;
     }
 
+    /**
+     * Apply the connection level policies shared by all the connection types
+     * 
+     * @param connection
+     *            The newly created connection
+     * @return The configured connection
+     */
+    protected ElasticsearchConnection configure(ElasticsearchConnection connection) {
+        connection.configureScheduling(schedulerService);
+        connection.configureHedging(hedgingConfiguration);
+        connection.configureSlowQueryLog(slowQueryLogConfiguration);
+        connection.configureWriteBehind(getWriteBehindSpool());
+        connection.configureChangeDetection(changeDetectionConfiguration);
+        connection.configureAdaptiveBulk(adaptiveBulkConfiguration);
+        connection.configureWriteCoalescing(writeCoalescingConfiguration);
+        connection.configureDeleteBatching(deleteBatchingConfiguration);
+        connection.configureRefreshCoordination(refreshCoordinationConfiguration);
+        return connection;
+    }
+
+    /**
+     * @return The write-behind spool shared by the connections of the configuration, or null when no spool directory is configured
+     */
+    private synchronized WriteBehindSpool getWriteBehindSpool() {
+        if (writeBehindSpool == null && writeBehindConfiguration.getSpoolDirectory() != null) {
+            writeBehindSpool = new WriteBehindSpool(Paths.get(writeBehindConfiguration.getSpoolDirectory()), writeBehindConfiguration.getSegmentSize() * 1024 * 1024,
+                    writeBehindConfiguration.getDrainBatchSize() * 1024 * 1024, writeBehindConfiguration.isForceWrites());
+        }
+        return writeBehindSpool;
+    }
+
+    @Override
+    public synchronized void dispose() {
+        if (writeBehindSpool != null) {
+            try {
+                writeBehindSpool.close();
+            } catch (IOException e) {
+                logger.error("Error while closing the write-behind spool " + writeBehindConfiguration.getSpoolDirectory() + ": " + e.getMessage(), e);
+            }
+            writeBehindSpool = null;
+        }
+    }
+
     @Override
     public void disconnect(ElasticsearchConnection connection) {
         try {
@@ -29,9 +29,9 @@ public class HttpConnectionProvider extends ElasticsearchBaseConnectionProvider
     public ElasticsearchConnection connect() {
         try {
             if (userConfiguration.getUserName() != null && userConfiguration.getPassword() != null) {
-                return new ElasticsearchConnection(getHost(), getPort(), userConfiguration.getUserName(), userConfiguration.getPassword());
+                return configure(new ElasticsearchConnection(getHost(), getPort(), userConfiguration.getUserName(), userConfiguration.getPassword()));
             } else {
-                return new ElasticsearchConnection(getHost(), getPort());
+                return configure(new ElasticsearchConnection(getHost(), getPort()));
             }
         } catch (Exception e) {
             throw new ElasticsearchException(ElasticsearchError.INVALID_CONNECTION, e);
@@ -33,8 +33,8 @@ public class HttpsConnectionProvider extends ElasticsearchBaseConnectionProvider
     @Override
     public ElasticsearchConnection connect() {
         try {
-            return new ElasticsearchConnection(getHost(), getPort(), userConfiguration.getUserName(), userConfiguration.getPassword(), trustStoreconfiguration.getTrustStoreType(),
-                    trustStoreconfiguration.getTrustStorePath(), trustStoreconfiguration.getTrustStorePassword());
+            return configure(new ElasticsearchConnection(getHost(), getPort(), userConfiguration.getUserName(), userConfiguration.getPassword(),
+                    trustStoreconfiguration.getTrustStoreType(), trustStoreconfiguration.getTrustStorePath(), trustStoreconfiguration.getTrustStorePassword()));
         } catch (Exception e) {
             throw new ElasticsearchException(ElasticsearchError.INVALID_CONNECTION, e);
         }
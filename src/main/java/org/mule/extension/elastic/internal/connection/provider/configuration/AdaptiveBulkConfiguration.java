@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection.provider.configuration;
+
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Bounds of the adaptive bulk sizing used by the bulk operations that opt in to it.
+ */
+public class AdaptiveBulkConfiguration {
+
+    /**
+     * Smallest bulk request size (kilobytes)
+     */
+    @Parameter
+    @Optional(defaultValue = "1024")
+    @DisplayName("Min Bulk Size")
+    @Summary("Smallest bulk request size in kilobytes")
+    private int minBulkSize;
+
+    /**
+     * Largest bulk request size (kilobytes)
+     */
+    @Parameter
+    @Optional(defaultValue = "16384")
+    @DisplayName("Max Bulk Size")
+    @Summary("Largest bulk request size in kilobytes")
+    private int maxBulkSize;
+
+    /**
+     * Largest number of bulk requests in flight per operation
+     */
+    @Parameter
+    @Optional(defaultValue = "4")
+    @DisplayName("Max Bulk Concurrency")
+    @Summary("Largest number of bulk requests in flight per operation")
+    private int maxBulkConcurrency;
+
+    /**
+     * Bulk latency (milliseconds) above which the size and concurrency are reduced
+     */
+    @Parameter
+    @Optional(defaultValue = "2000")
+    @DisplayName("Target Bulk Latency")
+    @Summary("Bulk latency in milliseconds above which the size and the concurrency are reduced")
+    private long targetBulkLatency;
+
+    public int getMinBulkSize() {
+        return minBulkSize;
+    }
+
+    public int getMaxBulkSize() {
+        return maxBulkSize;
+    }
+
+    public int getMaxBulkConcurrency() {
+        return maxBulkConcurrency;
+    }
+
+    public long getTargetBulkLatency() {
+        return targetBulkLatency;
+    }
+
+}
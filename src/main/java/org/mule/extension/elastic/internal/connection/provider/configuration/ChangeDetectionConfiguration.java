@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection.provider.configuration;
+
+import org.mule.runtime.api.meta.model.display.PathModel.Location;
+import org.mule.runtime.api.meta.model.display.PathModel.Type;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Path;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Content hash index parameters of the operations skipping unchanged document writes, and size of the document cache of the delta updates. The index is kept
+ *         off-heap unless a file is provided.
+ */
+public class ChangeDetectionConfiguration {
+
+    /**
+     * File the content hash index is memory-mapped to, so it survives restarts
+     */
+    @Parameter
+    @Optional
+    @Path(type = Type.FILE, location = Location.ANY)
+    @DisplayName("Hash Index File")
+    @Summary("File the content hash index is memory-mapped to. The index is kept off-heap and lost on restart when not set.")
+    private String hashIndexFile;
+
+    /**
+     * Number of documents tracked by the content hash index, 16 bytes each
+     */
+    @Parameter
+    @Optional(defaultValue = "1048576")
+    @DisplayName("Hash Index Capacity")
+    @Summary("Number of documents tracked by the content hash index, 16 bytes each")
+    private int hashIndexCapacity;
+
+    /**
+     * Number of documents whose last known source is kept for the delta updates
+     */
+    @Parameter
+    @Optional(defaultValue = "10000")
+    @DisplayName("Document Cache Size")
+    @Summary("Number of documents whose last known source is kept for the delta updates")
+    private int documentCacheSize;
+
+    public String getHashIndexFile() {
+        return hashIndexFile;
+    }
+
+    public int getHashIndexCapacity() {
+        return hashIndexCapacity;
+    }
+
+    public int getDocumentCacheSize() {
+        return documentCacheSize;
+    }
+
+}
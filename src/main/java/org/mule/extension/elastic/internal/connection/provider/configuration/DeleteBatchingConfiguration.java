@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection.provider.configuration;
+
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Batching parameters of the delete document operations that opt in to batching.
+ */
+public class DeleteBatchingConfiguration {
+
+    /**
+     * Time (milliseconds) the deletes are gathered before they are sent
+     */
+    @Parameter
+    @Optional(defaultValue = "20")
+    @DisplayName("Delete Batch Window")
+    @Summary("Time in milliseconds the deletes are gathered before they are sent in one bulk request")
+    private long deleteBatchWindow;
+
+    /**
+     * Number of gathered deletes after which they are sent before the end of the window
+     */
+    @Parameter
+    @Optional(defaultValue = "1000")
+    @DisplayName("Max Delete Batch Size")
+    @Summary("Number of gathered deletes after which they are sent before the end of the window")
+    private int maxDeleteBatchSize;
+
+    public long getDeleteBatchWindow() {
+        return deleteBatchWindow;
+    }
+
+    public int getMaxDeleteBatchSize() {
+        return maxDeleteBatchSize;
+    }
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection.provider.configuration;
+
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Hedged request policy parameters. Hedging is only applied to the operations that opt in to it.
+ */
+public class HedgingConfiguration {
+
+    /**
+     * Latency percentile of the recent requests after which a hedged request is sent
+     */
+    @Parameter
+    @Optional(defaultValue = "95")
+    @DisplayName("Hedge Delay Percentile")
+    @Summary("Latency percentile of the recent requests after which a hedged request is sent to another node")
+    private int hedgeDelayPercentile;
+
+    /**
+     * Minimum delay (milliseconds) before a hedged request is sent
+     */
+    @Parameter
+    @Optional(defaultValue = "20")
+    @DisplayName("Minimum Hedge Delay")
+    @Summary("Minimum delay in milliseconds before a hedged request is sent")
+    private long minHedgeDelay;
+
+    /**
+     * Maximum percentage of extra requests that may be sent as hedges
+     */
+    @Parameter
+    @Optional(defaultValue = "5")
+    @DisplayName("Hedge Budget")
+    @Summary("Maximum percentage of extra requests that may be sent as hedges")
+    private int hedgeBudget;
+
+    public int getHedgeDelayPercentile() {
+        return hedgeDelayPercentile;
+    }
+
+    public long getMinHedgeDelay() {
+        return minHedgeDelay;
+    }
+
+    public int getHedgeBudget() {
+        return hedgeBudget;
+    }
+
+}
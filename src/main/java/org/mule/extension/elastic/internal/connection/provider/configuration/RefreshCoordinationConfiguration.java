@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection.provider.configuration;
+
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Refresh coordination parameters of the write operations waiting for their changes to be visible to search.
+ */
+public class RefreshCoordinationConfiguration {
+
+    /**
+     * Minimum time (milliseconds) between two refreshes of an index requested by the writes
+     */
+    @Parameter
+    @Optional(defaultValue = "200")
+    @DisplayName("Min Refresh Interval")
+    @Summary("Minimum time in milliseconds between two refreshes of an index requested by the writes waiting for visibility")
+    private long minRefreshInterval;
+
+    public long getMinRefreshInterval() {
+        return minRefreshInterval;
+    }
+
+}
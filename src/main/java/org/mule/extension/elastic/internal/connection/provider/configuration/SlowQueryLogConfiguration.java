@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection.provider.configuration;
+
+import org.mule.runtime.api.meta.model.display.PathModel.Location;
+import org.mule.runtime.api.meta.model.display.PathModel.Type;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Path;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Client side slow query log parameters. The log is disabled unless a log file is provided.
+ */
+public class SlowQueryLogConfiguration {
+
+    /**
+     * Slow query log file path
+     */
+    @Parameter
+    @Optional
+    @Path(type = Type.FILE, location = Location.ANY)
+    @DisplayName("Slow Query Log File")
+    private String slowQueryLogFile;
+
+    /**
+     * Client measured latency (milliseconds) above which a search is logged
+     */
+    @Parameter
+    @Optional(defaultValue = "1000")
+    @DisplayName("Client Latency Threshold")
+    @Summary("Client measured latency in milliseconds above which a search is logged")
+    private long clientLatencyThreshold;
+
+    /**
+     * Server reported took time (milliseconds) above which a search is logged
+     */
+    @Parameter
+    @Optional(defaultValue = "500")
+    @DisplayName("Took Threshold")
+    @Summary("Server reported took time in milliseconds above which a search is logged")
+    private long tookThreshold;
+
+    /**
+     * Percentage of the slow searches that are re-executed with profiling enabled
+     */
+    @Parameter
+    @Optional(defaultValue = "10")
+    @DisplayName("Profile Sample Rate")
+    @Summary("Percentage of the slow searches that are re-executed with profiling enabled")
+    private int profileSampleRate;
+
+    /**
+     * Size (megabytes) after which the log file is rotated
+     */
+    @Parameter
+    @Optional(defaultValue = "10")
+    @DisplayName("Max File Size")
+    @Summary("Size in megabytes after which the log file is rotated")
+    private int maxFileSize;
+
+    /**
+     * Number of rotated log files to keep
+     */
+    @Parameter
+    @Optional(defaultValue = "5")
+    @DisplayName("Max Files")
+    private int maxFiles;
+
+    public String getSlowQueryLogFile() {
+        return slowQueryLogFile;
+    }
+
+    public long getClientLatencyThreshold() {
+        return clientLatencyThreshold;
+    }
+
+    public long getTookThreshold() {
+        return tookThreshold;
+    }
+
+    public int getProfileSampleRate() {
+        return profileSampleRate;
+    }
+
+    public int getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection.provider.configuration;
+
+import org.mule.runtime.api.meta.model.display.PathModel.Location;
+import org.mule.runtime.api.meta.model.display.PathModel.Type;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Path;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Write-behind spool parameters. The write-behind operations are disabled unless a spool directory is provided. The journal is shared by the connections of the
+ *         configuration and opened by the first write-behind operation, the requests left in it by a previous run are drained from then on.
+ */
+public class WriteBehindConfiguration {
+
+    /**
+     * Directory holding the journal segments and the drain checkpoint
+     */
+    @Parameter
+    @Optional
+    @Path(type = Type.DIRECTORY, location = Location.ANY)
+    @DisplayName("Spool Directory")
+    private String spoolDirectory;
+
+    /**
+     * Size (megabytes) of a journal segment
+     */
+    @Parameter
+    @Optional(defaultValue = "64")
+    @DisplayName("Segment Size")
+    @Summary("Size in megabytes of a journal segment")
+    private int segmentSize;
+
+    /**
+     * Maximum size (megabytes) of a bulk request sent while draining the journal
+     */
+    @Parameter
+    @Optional(defaultValue = "5")
+    @DisplayName("Drain Batch Size")
+    @Summary("Maximum size in megabytes of a bulk request sent while draining the journal")
+    private int drainBatchSize;
+
+    /**
+     * Force every appended write to the storage device before the operation returns
+     */
+    @Parameter
+    @Optional(defaultValue = "false")
+    @DisplayName("Force Writes")
+    @Summary("Force every appended write to the storage device before the operation returns")
+    private boolean forceWrites;
+
+    public String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public int getDrainBatchSize() {
+        return drainBatchSize;
+    }
+
+    public boolean isForceWrites() {
+        return forceWrites;
+    }
+
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.connection.provider.configuration;
+
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         Write coalescing parameters of the coalesced write operation.
+ */
+public class WriteCoalescingConfiguration {
+
+    /**
+     * Time (milliseconds) the writes are held and merged before they are sent
+     */
+    @Parameter
+    @Optional(defaultValue = "50")
+    @DisplayName("Coalescing Window")
+    @Summary("Time in milliseconds the writes are held and merged before they are sent")
+    private long coalescingWindow;
+
+    /**
+     * Number of pending documents after which the writes are sent before the end of the window
+     */
+    @Parameter
+    @Optional(defaultValue = "1000")
+    @DisplayName("Max Coalesced Documents")
+    @Summary("Number of pending documents after which the writes are sent before the end of the window")
+    private int maxCoalescedDocuments;
+
+    public long getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
+    public int getMaxCoalescedDocuments() {
+        return maxCoalescedDocuments;
+    }
+
+}
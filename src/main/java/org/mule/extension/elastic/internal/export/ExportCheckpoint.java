@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Progress of a resumable export: the sort values of the last exported hit, the exported document count and the durable size of the target file.
+ */
+public class ExportCheckpoint {
+
+    private final List<Object> sort;
+    private final long documents;
+    private final long bytes;
+
+    public ExportCheckpoint(List<Object> sort, long documents, long bytes) {
+        this.sort = sort;
+        this.documents = documents;
+        this.bytes = bytes;
+    }
+
+    public List<Object> getSort() {
+        return sort;
+    }
+
+    public long getDocuments() {
+        return documents;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Read a checkpoint file
+     * 
+     * @param file
+     *            Checkpoint file
+     * @return The checkpoint, or null if the file does not exist
+     */
+    @SuppressWarnings("unchecked")
+    public static ExportCheckpoint read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        byte[] content = Files.readAllBytes(file);
+        try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY, content)) {
+            Map<String, Object> checkpoint = parser.map();
+            return new ExportCheckpoint((List<Object>) checkpoint.get("sort"), ((Number) checkpoint.get("documents")).longValue(),
+                    ((Number) checkpoint.get("bytes")).longValue());
+        }
+    }
+
+    /**
+     * Atomically replace the checkpoint file with a synced copy
+     * 
+     * @param file
+     *            Checkpoint file
+     */
+    public void write(Path file) throws IOException {
+        Map<String, Object> checkpoint = new HashMap<>();
+        checkpoint.put("sort", sort);
+        checkpoint.put("documents", documents);
+        checkpoint.put("bytes", bytes);
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        ByteBuffer content = ByteBuffer.wrap(ElasticsearchUtils.toJson(checkpoint).getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            // the content reaches the disk before the rename, a crash cannot leave an empty checkpoint in place of the previous one
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
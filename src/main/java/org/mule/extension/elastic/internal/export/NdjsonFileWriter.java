@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Writes newline delimited JSON documents to a file channel through a large direct buffer, optionally gzip compressed.
+ */
+public class NdjsonFileWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final byte NEW_LINE = '\n';
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final boolean compress;
+    private GZIPOutputStream gzip;
+    private long documents;
+    private long bytes;
+    private boolean closed;
+
+    public NdjsonFileWriter(Path file, boolean compress) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.compress = compress;
+    }
+
+    /**
+     * Reopen a file written up to a checkpoint. Anything written after the checkpoint is discarded.
+     * 
+     * @param file
+     *            The file to resume
+     * @param compress
+     *            Whether the file is gzip compressed
+     * @param checkpointBytes
+     *            File size at the checkpoint
+     * @param checkpointDocuments
+     *            Documents written up to the checkpoint
+     */
+    public NdjsonFileWriter(Path file, boolean compress, long checkpointBytes, long checkpointDocuments) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.truncate(checkpointBytes);
+        this.channel.position(checkpointBytes);
+        this.compress = compress;
+        this.bytes = checkpointBytes;
+        this.documents = checkpointDocuments;
+    }
+
+    /**
+     * Write one JSON document followed by a new line
+     */
+    public void writeDocument(byte[] document, int offset, int length) throws IOException {
+        if (compress) {
+            if (gzip == null) {
+                // every checkpoint ends a gzip member, concatenated members form a valid gzip file
+                gzip = new GZIPOutputStream(new BufferedChannelStream(), BUFFER_SIZE);
+            }
+            gzip.write(document, offset, length);
+            gzip.write(NEW_LINE);
+        } else {
+            put(document, offset, length);
+            put(NEW_LINE);
+        }
+        documents++;
+    }
+
+    public long getDocuments() {
+        return documents;
+    }
+
+    /**
+     * @return Bytes written to the file so far, including the buffered bytes
+     */
+    public long getBytes() {
+        return bytes + buffer.position();
+    }
+
+    private void put(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    private void put(byte value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put(value);
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytes += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Make everything written so far durable
+     * 
+     * @return File size at the checkpoint
+     */
+    public long checkpoint() throws IOException {
+        if (gzip != null) {
+            gzip.finish();
+            gzip = null;
+        }
+        drain();
+        channel.force(false);
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            checkpoint();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Routes the compressed bytes through the direct buffer
+     */
+    private class BufferedChannelStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            put(b, off, len);
+        }
+    }
+}
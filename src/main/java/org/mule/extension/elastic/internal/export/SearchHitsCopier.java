@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.export;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentLocation;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Copies the hits of a search response body to a {@link NdjsonFileWriter} one hit at a time, without building the search response objects. The response body
+ *         is buffered by the client, so each hit is written as the raw slice of the body it spans instead of being parsed and serialized again: the parser only
+ *         locates the hits. The body must not be pretty printed, a hit is written as a single line.
+ */
+public class SearchHitsCopier {
+
+    /**
+     * Copy every hit of the search response to the writer
+     * 
+     * @param content
+     *            Search response body
+     * @param writer
+     *            Target writer
+     * @return The copied page
+     * @throws IOException
+     *             If the response can not be parsed or the file can not be written
+     */
+    public Page copy(byte[] content, NdjsonFileWriter writer) throws IOException {
+        Page page = new Page();
+        int[] lineStarts = lineStarts(content);
+        try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY, content)) {
+            parser.nextToken();
+            String field = null;
+            XContentParser.Token token;
+            while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT && token != null) {
+                if (token == XContentParser.Token.FIELD_NAME) {
+                    field = parser.currentName();
+                } else if ("_scroll_id".equals(field) && token == XContentParser.Token.VALUE_STRING) {
+                    page.scrollId = parser.text();
+                } else if ("hits".equals(field) && token == XContentParser.Token.START_OBJECT) {
+                    copyHits(parser, content, lineStarts, writer, page);
+                } else if (!token.isValue()) {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return page;
+    }
+
+    private static void copyHits(XContentParser parser, byte[] content, int[] lineStarts, NdjsonFileWriter writer, Page page) throws IOException {
+        String field = null;
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                field = parser.currentName();
+            } else if ("hits".equals(field) && token == XContentParser.Token.START_ARRAY) {
+                int start = 0;
+                int end = 0;
+                while (parser.nextToken() == XContentParser.Token.START_OBJECT) {
+                    start = offset(parser.getTokenLocation(), lineStarts);
+                    parser.skipChildren();
+                    // the location of the closing brace of the hit
+                    end = offset(parser.getTokenLocation(), lineStarts) + 1;
+                    writer.writeDocument(content, start, end - start);
+                    page.hits++;
+                }
+                if (page.hits > 0) {
+                    page.lastSort = readSort(content, start, end - start);
+                }
+            } else if (!token.isValue()) {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * The parser reports token locations as line and column, the column counting bytes for a byte array body
+     */
+    private static int offset(XContentLocation location, int[] lineStarts) {
+        return lineStarts[location.lineNumber - 1] + location.columnNumber - 1;
+    }
+
+    private static int[] lineStarts(byte[] content) {
+        int lines = 1;
+        for (byte b : content) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+        int[] starts = new int[lines];
+        int line = 1;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == '\n') {
+                starts[line++] = i + 1;
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * Read the sort values of the last copied hit, used as the search_after values of the next page
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Object> readSort(byte[] content, int offset, int length) throws IOException {
+        try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY, content, offset, length)) {
+            return (List<Object>) parser.map().get("sort");
+        }
+    }
+
+    /**
+     * A page of copied hits
+     */
+    public static class Page {
+
+        private String scrollId;
+        private int hits;
+        private List<Object> lastSort;
+
+        public String getScrollId() {
+            return scrollId;
+        }
+
+        /**
+         * @return Sort values of the last hit, null when the hits were not sorted
+         */
+        public List<Object> getLastSort() {
+            return lastSort;
+        }
+
+        public int getHits() {
+            return hits;
+        }
+    }
+}
@@ -3,14 +3,28 @@
  */
 package org.mule.extension.elastic.internal.extension;
 
+import org.mule.extension.elastic.internal.aggregation.Aggregation;
+import org.mule.extension.elastic.internal.aggregation.CardinalityAggregation;
+import org.mule.extension.elastic.internal.aggregation.DateHistogramAggregation;
+import org.mule.extension.elastic.internal.aggregation.StatsAggregation;
+import org.mule.extension.elastic.internal.aggregation.TermsAggregation;
 import org.mule.extension.elastic.internal.connection.provider.HttpConnectionProvider;
 import org.mule.extension.elastic.internal.connection.provider.HttpsConnectionProvider;
 import org.mule.extension.elastic.internal.error.ElasticsearchError;
 import org.mule.extension.elastic.internal.error.ExecuteErrorsProvider;
+import org.mule.extension.elastic.internal.operations.AggregationOperations;
+import org.mule.extension.elastic.internal.operations.ByQueryOperations;
+import org.mule.extension.elastic.internal.operations.CoalescedWriteOperations;
 import org.mule.extension.elastic.internal.operations.DocumentOperations;
+import org.mule.extension.elastic.internal.operations.ExportOperations;
 import org.mule.extension.elastic.internal.operations.IndexOperations;
 import org.mule.extension.elastic.internal.operations.InfoOperation;
+import org.mule.extension.elastic.internal.operations.ReindexOperations;
+import org.mule.extension.elastic.internal.operations.ScriptOperations;
 import org.mule.extension.elastic.internal.operations.SearchOperations;
+import org.mule.extension.elastic.internal.operations.SearchTemplateOperations;
+import org.mule.extension.elastic.internal.operations.TaskOperations;
+import org.mule.extension.elastic.internal.operations.WriteBehindOperations;
 import org.mule.extension.elastic.internal.querytype.CommonTermsQuery;
 import org.mule.extension.elastic.internal.querytype.MatchAllQuery;
 import org.mule.extension.elastic.internal.querytype.MatchPhrasePrefixQuery;
@@ -20,9 +34,11 @@ import org.mule.extension.elastic.internal.querytype.MultiMatchQuery;
 import org.mule.extension.elastic.internal.querytype.Query;
 import org.mule.extension.elastic.internal.querytype.QueryStringQuery;
 import org.mule.extension.elastic.internal.querytype.SimpleQueryString;
+import org.mule.extension.elastic.internal.source.DocumentPollingSource;
 import org.mule.runtime.api.meta.Category;
 import org.mule.runtime.extension.api.annotation.Extension;
 import org.mule.runtime.extension.api.annotation.Operations;
+import org.mule.runtime.extension.api.annotation.Sources;
 import org.mule.runtime.extension.api.annotation.SubTypeMapping;
 import org.mule.runtime.extension.api.annotation.connectivity.ConnectionProviders;
 import org.mule.runtime.extension.api.annotation.dsl.xml.Xml;
@@ -49,6 +65,12 @@ import org.mule.runtime.extension.api.annotation.license.RequiresEnterpriseLicen
     QueryStringQuery.class,
     SimpleQueryString.class
 })
+@SubTypeMapping(baseType = Aggregation.class, subTypes = {
+    TermsAggregation.class,
+    DateHistogramAggregation.class,
+    StatsAggregation.class,
+    CardinalityAggregation.class
+})
 
 @ConnectionProviders({
     HttpConnectionProvider.class,
@@ -58,10 +80,23 @@ import org.mule.runtime.extension.api.annotation.license.RequiresEnterpriseLicen
 @Operations({
     IndexOperations.class,
     SearchOperations.class,
+    AggregationOperations.class,
+    SearchTemplateOperations.class,
+    ExportOperations.class,
+    ByQueryOperations.class,
+    ReindexOperations.class,
+    TaskOperations.class,
     DocumentOperations.class,
+    WriteBehindOperations.class,
+    CoalescedWriteOperations.class,
+    ScriptOperations.class,
     InfoOperation.class
 })
 
+@Sources({
+    DocumentPollingSource.class
+})
+
 @Throws(ExecuteErrorsProvider.class)
 public class ElasticsearchExtension {
 
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.operations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeValuesSourceBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.mule.extension.elastic.internal.aggregation.Aggregation;
+import org.mule.extension.elastic.internal.aggregation.CompositeAggregationPagingProvider;
+import org.mule.extension.elastic.internal.aggregation.CompositeValuesSource;
+import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
+import org.mule.extension.elastic.internal.querytype.Query;
+import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Placement;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.mule.runtime.extension.api.runtime.streaming.PagingProvider;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         ElasticSearch composite aggregation operation
+ */
+public class AggregationOperations {
+
+    /**
+     * Composite aggregation operation streams every bucket of a multi source aggregation. The buckets are fetched page by page using the after key of the previous page.
+     * 
+     * @param index
+     *            Restricts the aggregation to an index
+     * @param type
+     *            Restricts the aggregation to a type
+     * @param name
+     *            Name of the composite aggregation
+     * @param sources
+     *            Value sources building the bucket key
+     * @param pageSize
+     *            Number of buckets requested per page
+     * @param queryConfiguration
+     *            Query restricting the aggregated documents. All documents are aggregated when not set.
+     * @param subAggregations
+     *            Aggregations computed for each composite bucket
+     * @return Stream of composite buckets
+     */
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public PagingProvider<ElasticsearchConnection, Map<String, Object>> compositeAggregation(@Optional String index, @Optional String type,
+            @Placement(order = 1) @DisplayName("Name") @Optional(defaultValue = "composite") String name,
+            @Placement(order = 2) @DisplayName("Sources") List<CompositeValuesSource> sources,
+            @Placement(order = 3) @DisplayName("Page Size") @Optional(defaultValue = "1000") @Summary("Number of buckets requested per page") int pageSize,
+            @DisplayName("Query Type") @Placement(order = 1, tab = "Query") @Optional Query<? extends QueryBuilder> queryConfiguration,
+            @DisplayName("Sub Aggregations") @Placement(order = 1, tab = "Aggregations") @Optional List<Aggregation<? extends AggregationBuilder>> subAggregations) {
+
+        String resource = type != null ? "/" + type + "/_search" : "/_search";
+        resource = index != null ? "/" + index.trim() + resource : resource;
+
+        List<CompositeValuesSourceBuilder<?>> valuesSources = new ArrayList<>();
+        for (CompositeValuesSource source : sources) {
+            valuesSources.add(source.getValuesSource());
+        }
+        CompositeAggregationBuilder compositeAggregation = new CompositeAggregationBuilder(name, valuesSources);
+        if (subAggregations != null) {
+            for (Aggregation<? extends AggregationBuilder> subAggregation : subAggregations) {
+                compositeAggregation.subAggregation(subAggregation.getAggregation());
+            }
+        }
+
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+        if (queryConfiguration != null) {
+            searchSourceBuilder.query(queryConfiguration.getQuery());
+        }
+
+        return new CompositeAggregationPagingProvider(resource, searchSourceBuilder, compositeAggregation, pageSize);
+    }
+
+}
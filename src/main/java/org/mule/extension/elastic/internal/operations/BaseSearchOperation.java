@@ -5,6 +5,7 @@ package org.mule.extension.elastic.internal.operations;
 
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.search.Scroll;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
@@ -13,6 +14,7 @@ import org.elasticsearch.search.sort.ScoreSortBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 import org.mule.extension.elastic.api.SearchRequestConfiguration;
 import org.mule.extension.elastic.api.SearchSourceConfiguration;
+import org.mule.extension.elastic.api.SearchSourceConfiguration.FetchMode;
 
 public class BaseSearchOperation {
 
@@ -71,11 +73,27 @@ public class BaseSearchOperation {
                     .order(searchSourceConfig.getSortOrder() != null ? SortOrder.fromString(searchSourceConfig.getSortOrder().name()) : SortOrder.DESC));
         }
 
-        searchSourceBuilder.fetchSource(searchSourceConfig.isFetchSource());
-
-        if (searchSourceConfig.getIncludeFields() != null && searchSourceConfig.getExcludeFields() != null) {
-
-            searchSourceBuilder.fetchSource(searchSourceConfig.getIncludeFields().toArray(new String[0]), searchSourceConfig.getExcludeFields().toArray(new String[0]));
+        if (searchSourceConfig.getFetchMode() == FetchMode.DOC_VALUES) {
+            // columnar fields only, the source is neither loaded nor parsed
+            searchSourceBuilder.fetchSource(false);
+            if (searchSourceConfig.getFetchFields() != null) {
+                for (String field : searchSourceConfig.getFetchFields()) {
+                    searchSourceBuilder.docValueField(field);
+                }
+            }
+        } else if (searchSourceConfig.getFetchMode() == FetchMode.STORED_FIELDS) {
+            searchSourceBuilder.fetchSource(false);
+            if (searchSourceConfig.getFetchFields() != null) {
+                searchSourceBuilder.storedFields(searchSourceConfig.getFetchFields());
+            }
+        } else {
+            searchSourceBuilder.fetchSource(searchSourceConfig.isFetchSource());
+
+            if (searchSourceConfig.isFetchSource() && (searchSourceConfig.getIncludeFields() != null || searchSourceConfig.getExcludeFields() != null)) {
+                String[] includes = searchSourceConfig.getIncludeFields() != null ? searchSourceConfig.getIncludeFields().toArray(new String[0]) : Strings.EMPTY_ARRAY;
+                String[] excludes = searchSourceConfig.getExcludeFields() != null ? searchSourceConfig.getExcludeFields().toArray(new String[0]) : Strings.EMPTY_ARRAY;
+                searchSourceBuilder.fetchSource(includes, excludes);
+            }
         }
 
         return searchSourceBuilder.from(searchSourceConfig.getFrom())
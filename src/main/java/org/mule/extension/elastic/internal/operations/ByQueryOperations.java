@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.operations;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.mule.extension.elastic.api.BulkByScrollConfiguration;
+import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
+import org.mule.extension.elastic.internal.error.ElasticsearchError;
+import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
+import org.mule.extension.elastic.internal.querytype.Query;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.mule.runtime.extension.api.annotation.param.Connection;
+import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.ParameterGroup;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Placement;
+import org.mule.runtime.extension.api.annotation.param.display.Text;
+import org.mule.runtime.extension.api.runtime.process.CompletionCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         ElasticSearch update by query and delete by query operations. The documents are processed server side by a background task, which is polled until it completed
+ *         without blocking a Mule thread.
+ */
+public class ByQueryOperations {
+
+    private static final Logger logger = LoggerFactory.getLogger(ByQueryOperations.class);
+
+    /**
+     * Update by query operation applies a script to every document matching the query. Without a script the documents are re-indexed as they are, picking up mapping
+     * changes.
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            Index containing the documents to update
+     * @param type
+     *            Restricts the update to a type
+     * @param script
+     *            Painless script applied to each matching document
+     * @param scriptParams
+     *            Parameters passed to the script
+     * @param taskConfiguration
+     *            Slicing, throttling, conflict and completion parameters
+     * @param queryConfiguration
+     *            Query selecting the documents to update. All documents are updated when not set.
+     * @param callback
+     *            Completed with the task result, or with the task id when not waiting for completion
+     */
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public void updateByQuery(@Connection ElasticsearchConnection esConnection, @Placement(order = 1) @DisplayName("Index") String index,
+            @Placement(order = 2) @DisplayName("Type") @Optional String type,
+            @Placement(order = 3) @DisplayName("Script") @Optional @Text String script,
+            @Placement(order = 4) @DisplayName("Script Parameters") @Optional Map<String, Object> scriptParams,
+            @ParameterGroup(name = "Task") @Placement(tab = "Optional Arguments") BulkByScrollConfiguration taskConfiguration,
+            @DisplayName("Query Type") @Placement(order = 1, tab = "Query") @Optional Query<? extends QueryBuilder> queryConfiguration,
+            CompletionCallback<String, StatusLine> callback) {
+
+        try {
+            String body = requestBody(queryConfiguration, script, scriptParams);
+            esConnection.invalidateContentHashes(index);
+            startTask(esConnection, resource(index, type, "_update_by_query"), body, taskConfiguration, callback);
+        } catch (Exception e) {
+            callback.error(new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e));
+        }
+    }
+
+    /**
+     * Delete by query operation deletes every document matching the query
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            Index containing the documents to delete
+     * @param type
+     *            Restricts the delete to a type
+     * @param taskConfiguration
+     *            Slicing, throttling, conflict and completion parameters
+     * @param queryConfiguration
+     *            Query selecting the documents to delete
+     * @param callback
+     *            Completed with the task result, or with the task id when not waiting for completion
+     */
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public void deleteByQuery(@Connection ElasticsearchConnection esConnection, @Placement(order = 1) @DisplayName("Index") String index,
+            @Placement(order = 2) @DisplayName("Type") @Optional String type,
+            @ParameterGroup(name = "Task") @Placement(tab = "Optional Arguments") BulkByScrollConfiguration taskConfiguration,
+            @DisplayName("Query Type") @Placement(order = 1, tab = "Query") Query<? extends QueryBuilder> queryConfiguration,
+            CompletionCallback<String, StatusLine> callback) {
+
+        try {
+            String body = requestBody(queryConfiguration, null, null);
+            esConnection.invalidateContentHashes(index);
+            startTask(esConnection, resource(index, type, "_delete_by_query"), body, taskConfiguration, callback);
+        } catch (Exception e) {
+            callback.error(new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e));
+        }
+    }
+
+    /**
+     * Start the task in the background and either return its id or poll it until it completed
+     */
+    static void startTask(ElasticsearchConnection esConnection, String resource, String body, BulkByScrollConfiguration taskConfiguration,
+            CompletionCallback<String, StatusLine> callback) throws IOException {
+        Map<String, String> params = taskConfiguration.getRequestParameters();
+        Response response = esConnection.getElasticsearchConnection().getLowLevelClient().performRequest(HttpPost.METHOD_NAME, resource, params,
+                new NStringEntity(body, ContentType.APPLICATION_JSON));
+
+        if (!taskConfiguration.isWaitForCompletion()) {
+            callback.success(ElasticsearchUtils.toResult(response));
+            return;
+        }
+
+        String taskId = (String) ElasticsearchUtils.responseToMap(response).get("task");
+        logger.info("Started task " + taskId + " for " + resource);
+        esConnection.getTaskPoller().awaitCompletion(taskId, taskConfiguration.getPollInterval(), callback);
+    }
+
+    private static String resource(String index, String type, String endpoint) {
+        return type != null ? "/" + index.trim() + "/" + type + "/" + endpoint : "/" + index.trim() + "/" + endpoint;
+    }
+
+    private static String requestBody(Query<? extends QueryBuilder> queryConfiguration, String script, Map<String, Object> scriptParams) throws IOException {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            if (queryConfiguration != null) {
+                builder.field("query", queryConfiguration.getQuery());
+            }
+            if (script != null) {
+                builder.startObject("script").field("source", script).field("lang", "painless");
+                if (scriptParams != null) {
+                    builder.field("params", scriptParams);
+                }
+                builder.endObject();
+            }
+            return builder.endObject().string();
+        }
+    }
+}
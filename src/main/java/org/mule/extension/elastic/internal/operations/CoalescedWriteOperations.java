@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.operations;
+
+import static org.mule.runtime.extension.api.annotation.param.MediaType.ANY;
+import static org.mule.runtime.extension.api.annotation.param.MediaType.APPLICATION_JSON;
+
+import java.util.Map;
+
+import org.apache.http.StatusLine;
+import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
+import org.mule.extension.elastic.internal.error.ElasticsearchError;
+import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
+import org.mule.runtime.extension.api.annotation.param.Connection;
+import org.mule.runtime.extension.api.annotation.param.Content;
+import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Placement;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.mule.runtime.extension.api.runtime.process.CompletionCallback;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         ElasticSearch coalesced write operations. The writes are held for the coalescing window of the connection and the writes of the same document are merged before
+ *         they are sent in one bulk request, reducing the writes and version conflicts of frequently changing documents.
+ */
+public class CoalescedWriteOperations {
+
+    /**
+     * Coalesced Write operation merges a write with the pending writes of the same document. Partial updates are merged field by field, the last value wins, and an
+     * index or delete replaces the pending writes of the document. The operation completes once the merged write was applied.
+     *
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            Name of the index
+     * @param type
+     *            Type of the index
+     * @param documentId
+     *            ID of the document
+     * @param operationType
+     *            Write action. An update merges the document into the existing source.
+     * @param document
+     *            Document source, or the partial document of an update. Ignored for deletes.
+     * @param routing
+     *            Routing is used to determine in which shard the document will reside in
+     * @param callback
+     *            Completed with the bulk item result of the merged write
+     */
+    @MediaType(value = APPLICATION_JSON, strict = false)
+    public void coalescedWrite(@Connection ElasticsearchConnection esConnection, @Placement(order = 1) @DisplayName("Index") String index,
+            @Placement(order = 2) @DisplayName("Type") String type, @Placement(order = 3) @DisplayName("Document Id") String documentId,
+            @Placement(order = 4) @DisplayName("Operation type") @Optional(defaultValue = "UPDATE") OpType operationType,
+            @Placement(order = 5) @DisplayName("Document") @Optional @Content Map<String, Object> document,
+            @Placement(tab = "Optional Arguments", order = 1) @DisplayName("Routing") @Optional @Summary("Routing value of the document") String routing,
+            CompletionCallback<String, StatusLine> callback) {
+        if (operationType != OpType.DELETE && document == null) {
+            callback.error(new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, new IllegalArgumentException("A document is required for a " + operationType.getLowercase())));
+            return;
+        }
+        esConnection.forgetContentHash(index, type, documentId);
+        esConnection.getWriteCoalescer().write(index, type, documentId, routing, operationType, document, callback);
+    }
+
+    /**
+     * Send the pending coalesced writes without waiting for the end of the window
+     *
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @return Number of writes received and sent, bulk requests and documents waiting
+     */
+    @MediaType(value = ANY, strict = false)
+    public Map<String, Object> flushCoalescedWrites(@Connection ElasticsearchConnection esConnection) {
+        esConnection.getWriteCoalescer().flush();
+        return esConnection.getWriteCoalescer().getStatus();
+    }
+}
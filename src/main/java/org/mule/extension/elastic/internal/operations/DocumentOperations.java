@@ -5,13 +5,30 @@ package org.mule.extension.elastic.internal.operations;
 
 import static org.mule.runtime.extension.api.annotation.param.MediaType.ANY;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.StatusLine;
 import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.message.BasicStatusLine;
 import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.ElasticsearchStatusException;
 import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.elasticsearch.action.DocWriteResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetRequest;
@@ -23,23 +40,42 @@ import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.Response;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.lucene.uid.Versions;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.seqno.SequenceNumbers;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 import org.mule.extension.elastic.api.DocumentFetchSourceOptions;
 import org.mule.extension.elastic.api.IndexDocumentOptions;
 import org.mule.extension.elastic.api.JsonData;
+import org.mule.extension.elastic.internal.bulk.DeleteBatcher;
+import org.mule.extension.elastic.internal.bulk.DocumentStream;
+import org.mule.extension.elastic.internal.bulk.MappedBulkFileUploader;
+import org.mule.extension.elastic.internal.bulk.ObjectBulkWriter;
+import org.mule.extension.elastic.internal.connection.ContentHashIndex;
+import org.mule.extension.elastic.internal.connection.DocumentSourceCache;
 import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
+import org.mule.extension.elastic.internal.connection.RefreshCoordinator;
 import org.mule.extension.elastic.internal.error.ElasticsearchError;
 import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
 import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.mule.runtime.api.meta.model.display.PathModel.Location;
+import org.mule.runtime.api.meta.model.display.PathModel.Type;
 import org.mule.runtime.extension.api.annotation.param.Connection;
+import org.mule.runtime.extension.api.annotation.param.Content;
 import org.mule.runtime.extension.api.annotation.param.MediaType;
 import org.mule.runtime.extension.api.annotation.param.Optional;
 import org.mule.runtime.extension.api.annotation.param.ParameterGroup;
 import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Path;
 import org.mule.runtime.extension.api.annotation.param.display.Placement;
 import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.mule.runtime.extension.api.runtime.operation.Result;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,7 +100,8 @@ public class DocumentOperations {
      * @param type
      *            Type of the index
      * @param documentId
-     *            ID of the document
+     *            ID of the document. Without an id Elasticsearch generates one and skips the version lookup of the write, which is faster for append-only data. The
+     *            generated id is returned in the response.
      * @param routing
      *            Routing is used to determine in which shard the document will reside in
      * @param inputSource
@@ -86,12 +123,21 @@ public class DocumentOperations {
      *            Type of the operation. When create type is used, the index operation will fail if a document by that id already exists in the index.
      * @param pipeline
      *            Name of the ingest pipeline to be executed before indexing the document
+     * @param skipUnchanged
+     *            Skip the write when the source is identical to the source last written for this document through the connection. A skipped write returns a response
+     *            without shard and version. The other writes of the document through the connection forget its source, a write made by another client is not seen.
+     * @param awaitVisibility
+     *            Return once the document is visible to search. The waiting writes of an index share one refresh, sent at most once per minimum refresh interval of the
+     *            connection, instead of each write forcing its own refresh.
+     * @param idempotencyKey
+     *            Key identifying the write, such as the id of the message it comes from, when no document id is set. The document id is derived from it, so a retried
+     *            write with the same key replaces the document instead of adding a duplicate.
      * @return IndexResponse
      */
 
     @MediaType(value = ANY, strict = false)
     public IndexResponse indexDocument(@Connection ElasticsearchConnection esConnection, @Placement(order = 1) @DisplayName("Index") String index,
-            @Placement(order = 2) @DisplayName("Type") String type, @Placement(order = 3) @DisplayName("Document Id") String documentId,
+            @Placement(order = 2) @DisplayName("Type") String type, @Placement(order = 3) @DisplayName("Document Id") @Optional String documentId,
             @Placement(order = 4) @ParameterGroup(name = "Input Document") IndexDocumentOptions inputSource,
             @Placement(tab = "Optional Arguments", order = 1) @DisplayName("Routing") @Optional String routing,
             @Placement(tab = "Optional Arguments", order = 2) @DisplayName("Parent") @Optional String parent,
@@ -100,14 +146,21 @@ public class DocumentOperations {
             @Placement(tab = "Optional Arguments", order = 5) @DisplayName("Version") @Optional(defaultValue = "0") long version,
             @Placement(tab = "Optional Arguments", order = 6) @DisplayName("Version Type") @Optional VersionType versionType,
             @Placement(tab = "Optional Arguments", order = 7) @DisplayName("Operation type") @Optional OpType operationType,
-            @Placement(tab = "Optional Arguments", order = 8) @DisplayName("Pipeline") @Optional @Summary("The name of the ingest pipeline to be executed before indexing the document") String pipeline) {
+            @Placement(tab = "Optional Arguments", order = 8) @DisplayName("Pipeline") @Optional @Summary("The name of the ingest pipeline to be executed before indexing the document") String pipeline,
+            @Placement(tab = "Optional Arguments", order = 9) @DisplayName("Skip Unchanged") @Optional(defaultValue = "false") @Summary("Skip the write when the source did not change since it was last written") boolean skipUnchanged,
+            @Placement(tab = "Optional Arguments", order = 10) @DisplayName("Wait For Visibility") @Optional(defaultValue = "false") @Summary("Return once a refresh shared with the concurrent writes made the document visible to search") boolean awaitVisibility,
+            @Placement(tab = "Optional Arguments", order = 11) @DisplayName("Idempotency Key") @Optional @Summary("Key the document id is derived from when no document id is set, a retried write with the same key replaces the document") String idempotencyKey) {
 
+        String id = documentId;
+        if (id == null && idempotencyKey != null) {
+            id = UUID.nameUUIDFromBytes(idempotencyKey.getBytes(StandardCharsets.UTF_8)).toString();
+        }
         IndexRequest indexRequest;
         try {
             if (inputSource.getJsonInputPath() != null) {
-                indexRequest = new IndexRequest(index, type, documentId).source(ElasticsearchUtils.readFileToString(inputSource.getJsonInputPath()), XContentType.JSON);
+                indexRequest = new IndexRequest(index, type, id).source(ElasticsearchUtils.readFileToString(inputSource.getJsonInputPath()), XContentType.JSON);
             } else {
-                indexRequest = new IndexRequest(index, type, documentId).source(inputSource.getDocumentSource());
+                indexRequest = new IndexRequest(index, type, id).source(inputSource.getDocumentSource());
             }
             if (routing != null) {
                 indexRequest.routing(routing);
@@ -134,7 +187,29 @@ public class DocumentOperations {
                 indexRequest.setPipeline(pipeline);
             }
 
+            long key = 0;
+            long content = 0;
+            // a document without an id is always new, there is nothing to compare with
+            boolean detectUnchanged = skipUnchanged && id != null;
+            if (detectUnchanged) {
+                byte[] source = BytesReference.toBytes(indexRequest.source());
+                key = ContentHashIndex.key(index, type, id);
+                content = ContentHashIndex.content(source, 0, source.length);
+                if (esConnection.getContentHashIndex().isUnchanged(key, content)) {
+                    logger.debug("Skipped unchanged document " + index + "/" + type + "/" + id);
+                    return new IndexResponse(new ShardId(index, "_na_", -1), type, id, SequenceNumbers.UNASSIGNED_SEQ_NO, 0, Versions.NOT_FOUND, false);
+                }
+            } else {
+                esConnection.forgetContentHash(index, type, id);
+            }
+
             IndexResponse indexResp = esConnection.getElasticsearchConnection().index(indexRequest, ElasticsearchUtils.getContentTypeJsonHeader());
+            if (detectUnchanged) {
+                esConnection.getContentHashIndex().put(key, ContentHashIndex.index(index), content);
+            }
+            if (awaitVisibility) {
+                awaitVisibility(esConnection, index);
+            }
 
             logger.info("Index Response : " + indexResp);
             return indexResp;
@@ -170,6 +245,8 @@ public class DocumentOperations {
      *            Version number of the indexed document
      * @param versionType
      *            Version type: internal, external, external_gte,
+     * @param hedgeRequest
+     *            Send a duplicate request to another node when the get is slower than the connection hedging percentile. Ignored when a preference is set.
      * @return Result that includes the index, type, id and version of the document
      */
 
@@ -183,8 +260,31 @@ public class DocumentOperations {
             @Placement(tab = "Optional Arguments", order = 5) @DisplayName("Set realtime flag") @Optional(defaultValue = "true") boolean realtime,
             @Placement(tab = "Optional Arguments", order = 6) @DisplayName("Refresh") @Summary("Perform a refresh before retrieving the document") @Optional(defaultValue = "false") boolean refresh,
             @Placement(tab = "Optional Arguments", order = 7) @DisplayName("Version") @Optional(defaultValue = "0") long version,
-            @Placement(tab = "Optional Arguments", order = 8) @DisplayName("Version Type") @Optional VersionType versionType) {
+            @Placement(tab = "Optional Arguments", order = 8) @DisplayName("Version Type") @Optional VersionType versionType,
+            @Placement(tab = "Optional Arguments", order = 9) @DisplayName("Hedge Request") @Optional(defaultValue = "false") @Summary("Send a duplicate request to another node when the get is slow") boolean hedgeRequest) {
+
+        GetResponse getResp;
+        try {
+            if (hedgeRequest && preference == null) {
+                // each attempt gets its own request, the original and the hedge are pinned to different nodes
+                getResp = esConnection.getHedgedRequestExecutor().execute("get", (hedgePreference, listener) -> {
+                    GetRequest hedgedRequest = getGetRequest(index, type, documentId, fetchSourceContext, routing, parent, hedgePreference, realtime, refresh, version,
+                            versionType);
+                    esConnection.getElasticsearchConnection().getAsync(hedgedRequest, listener, ElasticsearchUtils.getContentTypeJsonHeader());
+                });
+            } else {
+                GetRequest getRequest = getGetRequest(index, type, documentId, fetchSourceContext, routing, parent, preference, realtime, refresh, version, versionType);
+                getResp = esConnection.getElasticsearchConnection().get(getRequest, ElasticsearchUtils.getContentTypeJsonHeader());
+            }
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+        logger.info("Get Response : " + getResp);
+        return getResp.getSourceAsString();
+    }
 
+    private GetRequest getGetRequest(String index, String type, String documentId, DocumentFetchSourceOptions fetchSourceContext, String routing, String parent,
+            String preference, boolean realtime, boolean refresh, long version, VersionType versionType) {
         GetRequest getRequest = new GetRequest(index, type, documentId);
         if (fetchSourceContext != null && fetchSourceContext.isFetchSource()) {
 
@@ -222,14 +322,7 @@ public class DocumentOperations {
 
         getRequest.realtime(realtime);
         getRequest.refresh(refresh);
-        GetResponse getResp;
-        try {
-            getResp = esConnection.getElasticsearchConnection().get(getRequest, ElasticsearchUtils.getContentTypeJsonHeader());
-        } catch (Exception e) {
-            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
-        }
-        logger.info("Get Response : " + getResp);
-        return getResp.getSourceAsString();
+        return getRequest;
     }
 
     /**
@@ -258,6 +351,12 @@ public class DocumentOperations {
      *            Version number of the indexed document
      * @param versionType
      *            Version type: internal, external, external_gte
+     * @param batched
+     *            Gather the delete with the concurrent deletes of the connection into one bulk request. The timeout and refresh policy apply to a whole bulk request and
+     *            are not used in batched mode.
+     * @param awaitVisibility
+     *            Return once the delete is visible to search. The waiting writes of an index share one refresh, sent at most once per minimum refresh interval of the
+     *            connection.
      * @return DeleteResponse
      */
     @MediaType(value = ANY, strict = false)
@@ -268,7 +367,18 @@ public class DocumentOperations {
             @Placement(tab = "Optional Arguments", order = 3) @DisplayName("Timeout") @Optional @Summary("Timeout to wait for primary shard") String timeout,
             @Placement(tab = "Optional Arguments", order = 4) @DisplayName("Refresh policy") @Optional RefreshPolicy refreshPolicy,
             @Placement(tab = "Optional Arguments", order = 5) @DisplayName("Version") @Optional(defaultValue = "0") long version,
-            @Placement(tab = "Optional Arguments", order = 6) @DisplayName("Version Type") @Optional VersionType versionType) {
+            @Placement(tab = "Optional Arguments", order = 6) @DisplayName("Version Type") @Optional VersionType versionType,
+            @Placement(tab = "Optional Arguments", order = 7) @DisplayName("Batched") @Optional(defaultValue = "false") @Summary("Send the delete in a bulk request with the concurrent deletes") boolean batched,
+            @Placement(tab = "Optional Arguments", order = 8) @DisplayName("Wait For Visibility") @Optional(defaultValue = "false") @Summary("Return once a refresh shared with the concurrent writes made the delete visible to search") boolean awaitVisibility) {
+
+        esConnection.forgetContentHash(index, type, documentId);
+        if (batched) {
+            DeleteResponse deleteResp = batchedDelete(esConnection, index, type, documentId, routing, parent, version, versionType);
+            if (awaitVisibility) {
+                awaitVisibility(esConnection, index);
+            }
+            return deleteResp;
+        }
 
         DeleteRequest deleteRequest = new DeleteRequest(index, type, documentId);
         if (routing != null) {
@@ -293,10 +403,35 @@ public class DocumentOperations {
         } catch (Exception e) {
             throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
         }
+        if (awaitVisibility) {
+            awaitVisibility(esConnection, index);
+        }
         logger.info("Delete document response : " + deleteResp);
         return deleteResp;
     }
 
+    private DeleteResponse batchedDelete(ElasticsearchConnection esConnection, String index, String type, String documentId, String routing, String parent, long version,
+            VersionType versionType) {
+        DeleteResponse deleteResp;
+        try {
+            DeleteBatcher deleteBatcher = esConnection.getDeleteBatcher();
+            Map<String, Object> itemResult = deleteBatcher.delete(index, type, documentId, routing, parent, version, versionType).get(deleteBatcher.getMaxWait(),
+                    TimeUnit.MILLISECONDS);
+            if (itemResult.get("error") != null) {
+                throw new IOException("Delete of document " + documentId + " failed: " + itemResult.get("error"));
+            }
+            try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY, ElasticsearchUtils.toJson(itemResult))) {
+                deleteResp = DeleteResponse.fromXContent(parser);
+            }
+        } catch (ExecutionException e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+        logger.info("Batched delete document response : " + deleteResp);
+        return deleteResp;
+    }
+
     /**
      * Update Document operation allows to update a document based on a script provided.
      * 
@@ -334,7 +469,16 @@ public class DocumentOperations {
      *            Indicate that the script must run regardless of whether the document exists or not
      * @param docAsUpsert
      *            Indicate that the partial document must be used as the upsert document if it does not exist yet.
-     * @return UpdateResponse
+     * @param deltaUpdate
+     *            Send only the fields that differ from the last known source of the document, fetched when it is not cached by the connection, and skip the update when
+     *            nothing changed in the current source, fetched again before skipping. The update is conditional on the version of the known source and the source is
+     *            fetched again once on a version conflict. With a version
+     *            the delta is computed against the source of that version, and the update is sent unchanged when the current version differs. Ignored for script
+     *            updates.
+     * @param awaitVisibility
+     *            Return once the update is visible to search. The waiting writes of an index share one refresh, sent at most once per minimum refresh interval of the
+     *            connection. A noop update does not wait.
+     * @return UpdateResponse, with a noop result when nothing changed
      */
     @MediaType(value = ANY, strict = false)
     public UpdateResponse updateDocument(@Connection ElasticsearchConnection esConnection, @Placement(order = 1) @DisplayName("Index") String index,
@@ -349,7 +493,9 @@ public class DocumentOperations {
             @Placement(tab = "Optional Arguments", order = 7) @DisplayName("Version") @Optional(defaultValue = "0") long version,
             @Placement(tab = "Optional Arguments", order = 8) @DisplayName("Noop Detection") @Optional(defaultValue = "true") boolean detectNoop,
             @Placement(tab = "Optional Arguments", order = 9) @DisplayName("Scripted Upsert") @Optional(defaultValue = "false") boolean scriptedUpsert,
-            @Placement(tab = "Optional Arguments", order = 10) @DisplayName("Doc Upsert") @Optional(defaultValue = "false") boolean docAsUpsert) {
+            @Placement(tab = "Optional Arguments", order = 10) @DisplayName("Doc Upsert") @Optional(defaultValue = "false") boolean docAsUpsert,
+            @Placement(tab = "Optional Arguments", order = 11) @DisplayName("Delta Update") @Optional(defaultValue = "false") @Summary("Send only the fields that changed since the last known version of the document") boolean deltaUpdate,
+            @Placement(tab = "Optional Arguments", order = 12) @DisplayName("Wait For Visibility") @Optional(defaultValue = "false") @Summary("Return once a refresh shared with the concurrent writes made the update visible to search") boolean awaitVisibility) {
 
         UpdateRequest updateRequest = new UpdateRequest(index, type, documentId);
         if (inputSource.getJsonInputPath() != null) {
@@ -385,14 +531,104 @@ public class DocumentOperations {
         updateRequest.detectNoop(detectNoop);
         updateRequest.scriptedUpsert(scriptedUpsert);
         updateRequest.docAsUpsert(docAsUpsert);
+        esConnection.forgetContentHash(index, type, documentId);
         UpdateResponse updateResp;
+        if (deltaUpdate && updateRequest.doc() != null && updateRequest.script() == null) {
+            updateResp = deltaUpdate(esConnection, updateRequest);
+        } else {
+            try {
+                updateResp = esConnection.getElasticsearchConnection().update(updateRequest, ElasticsearchUtils.getContentTypeJsonHeader());
+            } catch (Exception e) {
+                throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+            }
+            logger.info("Update Response : " + updateResp);
+        }
+        if (awaitVisibility && updateResp.getResult() != DocWriteResponse.Result.NOOP) {
+            awaitVisibility(esConnection, index);
+        }
+        return updateResp;
+    }
+
+    /**
+     * Wait for the coordinated refresh of an index following the write
+     */
+    private void awaitVisibility(ElasticsearchConnection esConnection, String index) {
+        RefreshCoordinator refreshCoordinator = esConnection.getRefreshCoordinator();
+        try {
+            refreshCoordinator.awaitRefresh(index).get(refreshCoordinator.getMaxWait(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        } catch (ExecutionException e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    private UpdateResponse deltaUpdate(ElasticsearchConnection esConnection, UpdateRequest updateRequest) {
+        DocumentSourceCache cache = esConnection.getDocumentSourceCache();
+        String key = DocumentSourceCache.key(updateRequest.index(), updateRequest.type(), updateRequest.id(), updateRequest.routing());
+        Map<String, Object> partial = updateRequest.doc().sourceAsMap();
+        long requestedVersion = updateRequest.version();
+        boolean versioned = requestedVersion != Versions.MATCH_ANY;
+        boolean retried = false;
         try {
-            updateResp = esConnection.getElasticsearchConnection().update(updateRequest, ElasticsearchUtils.getContentTypeJsonHeader());
+            while (true) {
+                DocumentSourceCache.Entry known = cache.get(key);
+                if (known != null && versioned && known.getVersion() != requestedVersion) {
+                    // the cached source is not the one the caller expects to update
+                    known = null;
+                }
+                boolean fetched = known == null;
+                if (fetched) {
+                    GetRequest getRequest = new GetRequest(updateRequest.index(), updateRequest.type(), updateRequest.id()).routing(updateRequest.routing())
+                            .parent(updateRequest.parent());
+                    GetResponse getResponse = esConnection.getElasticsearchConnection().get(getRequest, ElasticsearchUtils.getContentTypeJsonHeader());
+                    if (!getResponse.isExists()) {
+                        // nothing to compare with, the whole document is sent
+                        return esConnection.getElasticsearchConnection().update(updateRequest, ElasticsearchUtils.getContentTypeJsonHeader());
+                    }
+                    known = new DocumentSourceCache.Entry(getResponse.getSourceAsMap(), getResponse.getVersion());
+                    if (versioned && known.getVersion() != requestedVersion) {
+                        // the update is sent as requested, the cluster reports the version conflict
+                        cache.put(key, known);
+                        return esConnection.getElasticsearchConnection().update(updateRequest, ElasticsearchUtils.getContentTypeJsonHeader());
+                    }
+                }
+
+                Map<String, Object> delta = DocumentSourceCache.delta(known.getSource(), partial);
+                if (delta.isEmpty() && !fetched) {
+                    // the cached source may have been changed by another write, a noop is only returned against the current source
+                    cache.remove(key);
+                    continue;
+                }
+                if (delta.isEmpty()) {
+                    cache.put(key, known);
+                    logger.info("Delta update of document " + updateRequest.id() + " skipped, nothing changed");
+                    return new UpdateResponse(new ShardId(updateRequest.index(), "_na_", -1), updateRequest.type(), updateRequest.id(), known.getVersion(),
+                            DocWriteResponse.Result.NOOP);
+                }
+
+                // a version and retry on conflict can not be combined
+                updateRequest.doc(delta).version(known.getVersion()).retryOnConflict(0);
+                try {
+                    UpdateResponse updateResp = esConnection.getElasticsearchConnection().update(updateRequest, ElasticsearchUtils.getContentTypeJsonHeader());
+                    cache.put(key, new DocumentSourceCache.Entry(DocumentSourceCache.merge(known.getSource(), delta), updateResp.getVersion()));
+                    logger.info("Delta update response : " + updateResp);
+                    return updateResp;
+                } catch (ElasticsearchStatusException e) {
+                    cache.remove(key);
+                    if (e.status() != RestStatus.CONFLICT || versioned || retried) {
+                        throw e;
+                    }
+                    retried = true;
+                    // the known source is stale, compare again with the current source
+                }
+            }
         } catch (Exception e) {
             throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
         }
-        logger.info("Update Response : " + updateResp);
-        return updateResp;
     }
 
     /**
@@ -414,22 +650,244 @@ public class DocumentOperations {
     @MediaType(value = ANY, strict = false)
     public Response bulkOperation(@Connection ElasticsearchConnection esConnection, @Optional String index, @Optional String type,
             @ParameterGroup(name = "Input data") JsonData jsonData) {
-        String resource = type != null ? "/" + type + "/_bulk" : "/_bulk";
-        resource = index != null ? "/" + index + resource : resource;
+        String resource = bulkResource(index, type);
         Map<String, String> params = Collections.singletonMap("pretty", "true");
-        HttpEntity entity;
         try {
-            if (jsonData.getJsonfile() != null) {
-                String jsonContent;
-                jsonContent = ElasticsearchUtils.readFileToString(jsonData.getJsonfile());
-                entity = new NStringEntity(jsonContent, ContentType.APPLICATION_JSON);
+            HttpEntity entity = bulkEntity(jsonData);
+            ContentHashIndex hashIndex = esConnection.getActiveContentHashIndex();
+            if (hashIndex != null) {
+                UnchangedBulkFilter.forget(hashIndex, EntityUtils.toByteArray(entity), index, type);
+            }
+            return esConnection.getElasticsearchConnection().getLowLevelClient().performRequest("POST", resource, params, entity);
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    /**
+     * Bulk operation that removes the index and create actions whose source is identical to the source last written for the document through the connection. The
+     * other actions are sent unchanged.
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            Index name on which bulk operation Performed
+     * @param type
+     *            Type name on which bulk operation Performed
+     * @param jsonData
+     *            Input file / data with list of operations to be performed like index, delete, update.
+     * @return Bulk response body with the number of skipped actions, and the HTTP status line as attributes. No request is sent when every action was skipped.
+     */
+
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public Result<String, StatusLine> bulkOperationSkipUnchanged(@Connection ElasticsearchConnection esConnection, @Optional String index, @Optional String type,
+            @ParameterGroup(name = "Input data") JsonData jsonData) {
+        String resource = bulkResource(index, type);
+        Map<String, String> params = Collections.singletonMap("pretty", "true");
+        try {
+            UnchangedBulkFilter filter = new UnchangedBulkFilter(esConnection.getContentHashIndex());
+            byte[] payload = filter.filter(EntityUtils.toByteArray(bulkEntity(jsonData)), index, type);
+            logger.info("Skipped " + filter.getSkipped() + " unchanged documents");
+            Map<String, Object> bulkResponse;
+            StatusLine statusLine;
+            if (filter.isEmpty()) {
+                // nothing left to send, the result is the one of a bulk request without actions
+                bulkResponse = new LinkedHashMap<>();
+                bulkResponse.put("took", 0);
+                bulkResponse.put("errors", false);
+                bulkResponse.put("items", Collections.emptyList());
+                statusLine = new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
             } else {
-                entity = new NStringEntity(jsonData.getJsonText(), ContentType.APPLICATION_JSON);
+                Response response = esConnection.getElasticsearchConnection().getLowLevelClient().performRequest("POST", resource, params,
+                        new NByteArrayEntity(payload, ContentType.APPLICATION_JSON));
+                // the body is read once, the result is built from the parsed response
+                bulkResponse = ElasticsearchUtils.responseToMap(response);
+                statusLine = response.getStatusLine();
+                filter.record(bulkResponse);
             }
+            bulkResponse.put("skipped", filter.getSkipped());
+            return ElasticsearchUtils.toResult(bulkResponse, statusLine);
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
 
-            return esConnection.getElasticsearchConnection().getLowLevelClient().performRequest("POST", resource, params, entity);
+    private static String bulkResource(String index, String type) {
+        String resource = type != null ? "/" + type + "/_bulk" : "/_bulk";
+        return index != null ? "/" + index + resource : resource;
+    }
+
+    private static HttpEntity bulkEntity(JsonData jsonData) throws IOException {
+        if (jsonData.getJsonfile() != null) {
+            return new NStringEntity(ElasticsearchUtils.readFileToString(jsonData.getJsonfile()), ContentType.APPLICATION_JSON);
+        }
+        return new NStringEntity(jsonData.getJsonText(), ContentType.APPLICATION_JSON);
+    }
+
+    /**
+     * Bulk Upload File operation sends a large NDJSON bulk file as several bulk requests. The file is memory-mapped and split on action boundaries into chunks that are
+     * uploaded concurrently, so no request exceeds the chunk size and the file is never loaded in memory.
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            Default index of the actions
+     * @param type
+     *            Default type of the actions
+     * @param bulkFile
+     *            NDJSON bulk file
+     * @param chunkSize
+     *            Size in kilobytes after which a chunk is sent
+     * @param maxConcurrentRequests
+     *            Maximum number of bulk requests in flight
+     * @param pipeline
+     *            Name of the ingest pipeline to be executed before indexing the documents
+     * @return Number of actions, bulk requests, bytes, failed actions and requests, and the first errors
+     */
+    @MediaType(value = ANY, strict = false)
+    public Map<String, Object> bulkUploadFile(@Connection ElasticsearchConnection esConnection, @Placement(order = 1) @DisplayName("Index") @Optional String index,
+            @Placement(order = 2) @DisplayName("Type") @Optional String type,
+            @Placement(order = 3) @DisplayName("Bulk File") @Path(type = Type.FILE, location = Location.ANY) String bulkFile,
+            @Placement(tab = "Optional Arguments", order = 1) @DisplayName("Chunk Size") @Optional(defaultValue = "5120") @Summary("Size in kilobytes after which a bulk request is sent") int chunkSize,
+            @Placement(tab = "Optional Arguments", order = 2) @DisplayName("Max Concurrent Requests") @Optional(defaultValue = "4") int maxConcurrentRequests,
+            @Placement(tab = "Optional Arguments", order = 3) @DisplayName("Pipeline") @Optional @Summary("The name of the ingest pipeline to be executed before indexing the documents") String pipeline) {
+        String resource = type != null ? "/" + type + "/_bulk" : "/_bulk";
+        resource = index != null ? "/" + index + resource : resource;
+        Map<String, String> params = new HashMap<>();
+        if (pipeline != null) {
+            params.put("pipeline", pipeline);
+        }
+
+        // the actions of the file are not parsed, the recorded content of every document is forgotten
+        esConnection.invalidateContentHashes("_all");
+        long start = System.currentTimeMillis();
+        try {
+            MappedBulkFileUploader uploader = new MappedBulkFileUploader(esConnection.getElasticsearchConnection().getLowLevelClient(), resource, params, chunkSize * 1024,
+                    maxConcurrentRequests);
+            Map<String, Object> summary = uploader.upload(Paths.get(bulkFile));
+            summary.put("elapsedMillis", System.currentTimeMillis() - start);
+            logger.info("Bulk upload summary : " + summary);
+            return summary;
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    /**
+     * Bulk Index Documents operation writes a stream of records with bulk requests. The records are serialized directly into a pooled buffer that is sent each time it
+     * reaches the chunk size, so the memory used does not depend on the number of records.
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            Name of the index
+     * @param type
+     *            Type of the index
+     * @param documents
+     *            Records to write: a list, an iterator such as the output of a streaming or paged operation, or a JSON array stream. The records are read one at a time
+     *            as they are written, a streaming input is never materialized.
+     * @param idField
+     *            Record field holding the document id. Elasticsearch generates the id when not set.
+     * @param routingField
+     *            Record field holding the routing value
+     * @param opTypeField
+     *            Record field holding the action (index, create, update or delete) of the record
+     * @param operationType
+     *            Action of the records without an action field
+     * @param chunkSize
+     *            Size in kilobytes after which a bulk request is sent
+     * @param pipeline
+     *            Name of the ingest pipeline to be executed before indexing the documents
+     * @param adaptiveSizing
+     *            Let the connection choose the bulk size and concurrency from the observed latency and rejections, within the adaptive bulk bounds. The chunk size is
+     *            ignored.
+     * @param shardAwareRouting
+     *            Send each action directly to the node holding the primary of its shard, grouping the actions in one bulk request per node
+     * @param orderingLanes
+     *            Number of lanes the actions are partitioned into by index and id. The lanes are sent concurrently and the writes of a document are applied in order. 0
+     *            leaves the order of the writes of a document unspecified when chunks are sent concurrently.
+     * @return Number of documents, bulk requests, bytes and failed actions
+     */
+    @MediaType(value = ANY, strict = false)
+    public Map<String, Object> bulkIndexDocuments(@Connection ElasticsearchConnection esConnection, @Placement(order = 1) @DisplayName("Index") String index,
+            @Placement(order = 2) @DisplayName("Type") String type,
+            @Placement(order = 3) @DisplayName("Documents") @Content Object documents,
+            @Placement(order = 4) @DisplayName("Id Field") @Optional String idField,
+            @Placement(tab = "Optional Arguments", order = 1) @DisplayName("Routing Field") @Optional String routingField,
+            @Placement(tab = "Optional Arguments", order = 2) @DisplayName("Operation Type Field") @Optional @Summary("Record field holding the action of the record") String opTypeField,
+            @Placement(tab = "Optional Arguments", order = 3) @DisplayName("Operation type") @Optional(defaultValue = "INDEX") OpType operationType,
+            @Placement(tab = "Optional Arguments", order = 4) @DisplayName("Chunk Size") @Optional(defaultValue = "5120") @Summary("Size in kilobytes after which a bulk request is sent") int chunkSize,
+            @Placement(tab = "Optional Arguments", order = 5) @DisplayName("Pipeline") @Optional @Summary("The name of the ingest pipeline to be executed before indexing the documents") String pipeline,
+            @Placement(tab = "Optional Arguments", order = 6) @DisplayName("Adaptive Sizing") @Optional(defaultValue = "false") @Summary("Adapt the bulk size and concurrency to the observed latency and rejections") boolean adaptiveSizing,
+            @Placement(tab = "Optional Arguments", order = 7) @DisplayName("Shard Aware Routing") @Optional(defaultValue = "false") @Summary("Send the actions directly to the nodes holding the primary shards") boolean shardAwareRouting,
+            @Placement(tab = "Optional Arguments", order = 8) @DisplayName("Ordering Lanes") @Optional(defaultValue = "0") @Summary("Number of concurrent lanes, the writes of a document are always sent in order through the same lane") int orderingLanes) {
+
+        String resource = "/" + index + "/" + type + "/_bulk";
+        Map<String, String> params = new HashMap<>();
+        if (pipeline != null) {
+            params.put("pipeline", pipeline);
+        }
+
+        // fixed size chunks through the connection hosts are sent one at a time on the calling thread
+        boolean concurrent = adaptiveSizing || shardAwareRouting || orderingLanes > 0;
+        ContentHashIndex hashIndex = esConnection.getActiveContentHashIndex();
+        long start = System.currentTimeMillis();
+        try (ObjectBulkWriter writer = new ObjectBulkWriter(esConnection.getElasticsearchConnection().getLowLevelClient(), resource, params,
+                esConnection.getBulkBufferPool(), chunkSize * 1024, adaptiveSizing ? esConnection.getAdaptiveBulkController() : null,
+                shardAwareRouting ? esConnection.getShardRouter() : null, index, orderingLanes, concurrent ? esConnection.getScheduler() : null);
+                DocumentStream records = new DocumentStream(documents)) {
+            while (records.hasNext()) {
+                Map<String, Object> document = records.next();
+                OpType recordOpType = opTypeField != null && document.get(opTypeField) != null ? OpType.fromString(document.get(opTypeField).toString()) : operationType;
+                String id = fieldValue(document, idField);
+                if (hashIndex != null && id != null) {
+                    hashIndex.remove(ContentHashIndex.key(index, type, id));
+                }
+                writer.add(recordOpType, id, fieldValue(document, routingField), document);
+            }
+            writer.finish();
+
+            Map<String, Object> summary = writer.getSummary();
+            summary.put("elapsedMillis", System.currentTimeMillis() - start);
+            logger.info("Bulk index summary : " + summary);
+            return summary;
         } catch (Exception e) {
             throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Get the bulk size and concurrency currently chosen by the adaptive bulk sizing
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @return Bulk size in bytes, concurrency, smoothed latency, took time and rejection rate
+     */
+    @MediaType(value = ANY, strict = false)
+    public Map<String, Object> getBulkSizingStatus(@Connection ElasticsearchConnection esConnection) {
+        return esConnection.getAdaptiveBulkController().getStatus();
+    }
+
+    private static String fieldValue(Map<String, Object> document, String field) {
+        if (field == null || document.get(field) == null) {
+            return null;
+        }
+        return document.get(field).toString();
+    }
+
+    /**
+     * Get the counters of the operations skipping unchanged writes
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @return Number of written and of skipped documents since the connection was created
+     */
+    @MediaType(value = ANY, strict = false)
+    public Map<String, Object> getChangeDetectionStatus(@Connection ElasticsearchConnection esConnection) {
+        ContentHashIndex hashIndex = esConnection.getContentHashIndex();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("written", hashIndex.getWritten());
+        status.put("skipped", hashIndex.getSkipped());
+        return status;
+    }
+}
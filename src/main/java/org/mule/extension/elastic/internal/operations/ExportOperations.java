@@ -0,0 +1,254 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.operations;
+
+import static org.mule.runtime.extension.api.annotation.param.MediaType.ANY;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
+import org.mule.extension.elastic.internal.error.ElasticsearchError;
+import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
+import org.mule.extension.elastic.internal.export.ExportCheckpoint;
+import org.mule.extension.elastic.internal.export.NdjsonFileWriter;
+import org.mule.extension.elastic.internal.export.SearchHitsCopier;
+import org.mule.extension.elastic.internal.export.SearchHitsCopier.Page;
+import org.mule.extension.elastic.internal.querytype.Query;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.mule.runtime.api.meta.model.display.PathModel.Location;
+import org.mule.runtime.api.meta.model.display.PathModel.Type;
+import org.mule.runtime.extension.api.annotation.param.Connection;
+import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Path;
+import org.mule.runtime.extension.api.annotation.param.display.Placement;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         ElasticSearch export operations writing search hits directly to files
+ */
+public class ExportOperations {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportOperations.class);
+
+    private static final String HITS_FILTER = "_scroll_id,hits.hits";
+
+    /**
+     * Export to File operation scrolls through the matching documents and streams each hit from the HTTP response straight to a newline delimited JSON file. The hits are
+     * never converted to Mule messages.
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            Index to export
+     * @param type
+     *            Restricts the export to a type
+     * @param targetFile
+     *            Path of the NDJSON file to write
+     * @param compress
+     *            Gzip compress the target file
+     * @param batchSize
+     *            Number of hits requested per scroll page
+     * @param scrollKeepAlive
+     *            Keep the scroll context alive for the minutes time between pages
+     * @param queryConfiguration
+     *            Query restricting the exported documents. All documents are exported when not set.
+     * @return Export summary with the document count, the file size and the elapsed time
+     */
+    @MediaType(value = ANY, strict = false)
+    public Map<String, Object> exportToFile(@Connection ElasticsearchConnection esConnection, @Placement(order = 1) @DisplayName("Index") String index,
+            @Placement(order = 2) @DisplayName("Type") @Optional String type,
+            @Placement(order = 3) @DisplayName("Target File") @Path(type = Type.FILE, location = Location.ANY) String targetFile,
+            @Placement(order = 4) @DisplayName("Compress") @Optional(defaultValue = "false") @Summary("Gzip compress the target file") boolean compress,
+            @Placement(tab = "Optional Arguments", order = 1) @DisplayName("Batch Size") @Optional(defaultValue = "1000") int batchSize,
+            @Placement(tab = "Optional Arguments", order = 2) @DisplayName("Scroll Keep Alive") @Optional(defaultValue = "5") @Summary("Keep the scroll context alive for the minutes time between pages") int scrollKeepAlive,
+            @DisplayName("Query Type") @Placement(order = 1, tab = "Query") @Optional Query<? extends QueryBuilder> queryConfiguration) {
+
+        String resource = type != null ? "/" + index.trim() + "/" + type + "/_search" : "/" + index.trim() + "/_search";
+        String keepAlive = scrollKeepAlive + "m";
+        RestClient client = esConnection.getElasticsearchConnection().getLowLevelClient();
+
+        // _doc order is the cheapest order to scroll in
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder().size(batchSize).sort("_doc", SortOrder.ASC);
+        if (queryConfiguration != null) {
+            searchSourceBuilder.query(queryConfiguration.getQuery());
+        }
+
+        Map<String, String> params = new HashMap<>();
+        params.put("scroll", keepAlive);
+        params.put("filter_path", HITS_FILTER);
+
+        long start = System.currentTimeMillis();
+        SearchHitsCopier copier = new SearchHitsCopier();
+        String scrollId = null;
+        try (NdjsonFileWriter writer = new NdjsonFileWriter(Paths.get(targetFile), compress)) {
+            Page page = copyPage(client.performRequest(HttpPost.METHOD_NAME, resource, params, jsonEntity(searchSourceBuilder.toString())), copier, writer);
+            scrollId = page.getScrollId();
+
+            while (page.getHits() > 0 && scrollId != null) {
+                logger.info("Exported " + writer.getDocuments() + " documents (" + writer.getBytes() + " bytes) to " + targetFile);
+                Map<String, Object> scroll = new HashMap<>();
+                scroll.put("scroll", keepAlive);
+                scroll.put("scroll_id", scrollId);
+                page = copyPage(client.performRequest(HttpPost.METHOD_NAME, "/_search/scroll", Collections.singletonMap("filter_path", HITS_FILTER),
+                        jsonEntity(ElasticsearchUtils.toJson(scroll))), copier, writer);
+                scrollId = page.getScrollId() != null ? page.getScrollId() : scrollId;
+            }
+            writer.close();
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("file", targetFile);
+            summary.put("documents", writer.getDocuments());
+            summary.put("bytes", writer.getBytes());
+            summary.put("tookMillis", System.currentTimeMillis() - start);
+            logger.info("Export summary : " + summary);
+            return summary;
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        } finally {
+            clearScroll(client, scrollId);
+        }
+    }
+
+    /**
+     * Resumable Export to File operation pages through the matching documents in sort key order using search_after, streaming the hits to a newline delimited JSON file.
+     * After each page the file is synced and a checkpoint with the last sort values is written, so an interrupted export resumes after the last checkpointed page
+     * instead of starting over. The checkpoint file is removed once the export completes.
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            Index to export
+     * @param type
+     *            Restricts the export to a type
+     * @param targetFile
+     *            Path of the NDJSON file to write
+     * @param compress
+     *            Gzip compress the target file
+     * @param sortField
+     *            Field the export is ordered by
+     * @param tieBreakerField
+     *            Field with a unique value per document ordering the documents sharing a sort value. It must have doc values, such as a keyword or numeric field:
+     *            sorting on _id or _uid loads their values in fielddata on every node, so they are rejected.
+     * @param checkpointFile
+     *            Path of the checkpoint file. Defaults to the target file path with a .checkpoint suffix.
+     * @param batchSize
+     *            Number of hits requested per page
+     * @param queryConfiguration
+     *            Query restricting the exported documents. All documents are exported when not set.
+     * @return Export summary with the document count, the file size, the elapsed time and whether the export was resumed
+     */
+    @MediaType(value = ANY, strict = false)
+    public Map<String, Object> resumableExportToFile(@Connection ElasticsearchConnection esConnection, @Placement(order = 1) @DisplayName("Index") String index,
+            @Placement(order = 2) @DisplayName("Type") @Optional String type,
+            @Placement(order = 3) @DisplayName("Target File") @Path(type = Type.FILE, location = Location.ANY) String targetFile,
+            @Placement(order = 4) @DisplayName("Compress") @Optional(defaultValue = "false") @Summary("Gzip compress the target file") boolean compress,
+            @Placement(order = 5) @DisplayName("Sort Field") @Summary("Field the export is ordered by") String sortField,
+            @Placement(order = 6) @DisplayName("Tie Breaker Field") @Summary("Unique keyword or numeric field ordering the documents sharing a sort value") String tieBreakerField,
+            @Placement(tab = "Optional Arguments", order = 1) @DisplayName("Checkpoint File") @Optional @Path(type = Type.FILE, location = Location.ANY) String checkpointFile,
+            @Placement(tab = "Optional Arguments", order = 2) @DisplayName("Batch Size") @Optional(defaultValue = "1000") int batchSize,
+            @DisplayName("Query Type") @Placement(order = 1, tab = "Query") @Optional Query<? extends QueryBuilder> queryConfiguration) {
+
+        if ("_id".equals(tieBreakerField) || "_uid".equals(tieBreakerField)) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED,
+                    new IllegalArgumentException("The tie breaker field must be a unique field with doc values, " + tieBreakerField + " is only sortable through fielddata"));
+        }
+        String resource = type != null ? "/" + index.trim() + "/" + type + "/_search" : "/" + index.trim() + "/_search";
+        java.nio.file.Path target = Paths.get(targetFile);
+        java.nio.file.Path checkpointPath = Paths.get(checkpointFile != null ? checkpointFile : targetFile + ".checkpoint");
+        RestClient client = esConnection.getElasticsearchConnection().getLowLevelClient();
+
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder().size(batchSize).sort(sortField, SortOrder.ASC).sort(tieBreakerField, SortOrder.ASC);
+        if (queryConfiguration != null) {
+            searchSourceBuilder.query(queryConfiguration.getQuery());
+        }
+
+        long start = System.currentTimeMillis();
+        SearchHitsCopier copier = new SearchHitsCopier();
+        try {
+            ExportCheckpoint checkpoint = ExportCheckpoint.read(checkpointPath);
+            List<Object> searchAfter = null;
+            NdjsonFileWriter writer;
+            if (checkpoint != null) {
+                logger.info("Resuming export to " + targetFile + " after " + checkpoint.getDocuments() + " documents");
+                writer = new NdjsonFileWriter(target, compress, checkpoint.getBytes(), checkpoint.getDocuments());
+                searchAfter = checkpoint.getSort();
+            } else {
+                writer = new NdjsonFileWriter(target, compress);
+            }
+
+            try {
+                Page page;
+                do {
+                    if (searchAfter != null) {
+                        searchSourceBuilder.searchAfter(searchAfter.toArray());
+                    }
+                    page = copyPage(client.performRequest(HttpPost.METHOD_NAME, resource, Collections.singletonMap("filter_path", "hits.hits"),
+                            jsonEntity(searchSourceBuilder.toString())), copier, writer);
+                    if (page.getHits() > 0) {
+                        searchAfter = page.getLastSort();
+                        new ExportCheckpoint(searchAfter, writer.getDocuments(), writer.checkpoint()).write(checkpointPath);
+                        logger.info("Exported " + writer.getDocuments() + " documents (" + writer.getBytes() + " bytes) to " + targetFile);
+                    }
+                } while (page.getHits() == batchSize);
+            } finally {
+                writer.close();
+            }
+            Files.deleteIfExists(checkpointPath);
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("file", targetFile);
+            summary.put("documents", writer.getDocuments());
+            summary.put("bytes", writer.getBytes());
+            summary.put("tookMillis", System.currentTimeMillis() - start);
+            summary.put("resumed", checkpoint != null);
+            logger.info("Export summary : " + summary);
+            return summary;
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    private static Page copyPage(Response response, SearchHitsCopier copier, NdjsonFileWriter writer) throws Exception {
+        // the client has buffered the body, the hits are copied from it as they are
+        return copier.copy(EntityUtils.toByteArray(response.getEntity()), writer);
+    }
+
+    private static NStringEntity jsonEntity(String json) {
+        return new NStringEntity(json, ContentType.APPLICATION_JSON);
+    }
+
+    private static void clearScroll(RestClient client, String scrollId) {
+        if (scrollId == null) {
+            return;
+        }
+        try {
+            client.performRequest(HttpDelete.METHOD_NAME, "/_search/scroll", Collections.emptyMap(),
+                    jsonEntity(ElasticsearchUtils.toJson(Collections.singletonMap("scroll_id", Collections.singletonList(scrollId)))));
+        } catch (Exception e) {
+            logger.warn("Unable to clear the export scroll: " + e.getMessage());
+        }
+    }
+}
@@ -5,8 +5,17 @@ package org.mule.extension.elastic.internal.operations;
 
 import static org.mule.runtime.extension.api.annotation.param.MediaType.ANY;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
 import org.elasticsearch.action.admin.indices.alias.Alias;
 import org.elasticsearch.action.admin.indices.close.CloseIndexRequest;
 import org.elasticsearch.action.admin.indices.close.CloseIndexResponse;
@@ -17,10 +26,12 @@ import org.elasticsearch.action.admin.indices.delete.DeleteIndexResponse;
 import org.elasticsearch.action.admin.indices.open.OpenIndexRequest;
 import org.elasticsearch.action.admin.indices.open.OpenIndexResponse;
 import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.RestClient;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.settings.Settings.Builder;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.mule.extension.elastic.api.IndexOptions;
+import org.mule.extension.elastic.internal.connection.BulkLoadRegistry;
 import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
 import org.mule.extension.elastic.internal.error.ElasticsearchError;
 import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
@@ -71,6 +82,13 @@ public class IndexOperations {
      *            Timeout to connect to the master node
      * @param waitForActiveShards
      *            The number of active shard copies to wait for before the create index
+     * @param bulkLoad
+     *            Create the index for an initial load, without replicas and with refreshes disabled, so every document is written once and no segment is refreshed during
+     *            the load. The settings the index is created with are restored by Finish Bulk Load. With a type they are recorded in the _meta of its mapping, so the load
+     *            can be finished from any connection, otherwise they are kept by this connection.
+     * @param asyncTranslog
+     *            Fsync the translog in the background rather than on every bulk request during the load. Documents acknowledged in the last few seconds before a node
+     *            failure can be lost, the load is expected to be restarted in that case.
      * @return CreateIndexResponse
      * 
      */
@@ -86,15 +104,34 @@ public class IndexOperations {
             @Placement(tab = "Optional Arguments", order = 6) @Optional @DisplayName("Index Alias") String indexAlias,
             @Placement(tab = "Optional Arguments", order = 7) @Optional @Summary("Timeout to wait for the all the nodes to acknowledge the index creation") @DisplayName("Timeout") String timeout,
             @Placement(tab = "Optional Arguments", order = 8) @Optional @Summary("Timeout to connect to the master node") @DisplayName("Master Node Timeout") String masterNodeTimeout,
-            @Placement(tab = "Optional Arguments", order = 9) @DisplayName("Wait for Active Shards") @Optional(defaultValue = "0") int waitForActiveShards) {
+            @Placement(tab = "Optional Arguments", order = 9) @DisplayName("Wait for Active Shards") @Optional(defaultValue = "0") int waitForActiveShards,
+            @Placement(tab = "Optional Arguments", order = 10) @DisplayName("Bulk Load") @Optional(defaultValue = "false") @Summary("Create the index without replicas and refreshes for an initial load, the settings are restored by Finish Bulk Load") boolean bulkLoad,
+            @Placement(tab = "Optional Arguments", order = 11) @DisplayName("Async Translog") @Optional(defaultValue = "false") @Summary("Fsync the translog in the background during the bulk load") boolean asyncTranslog) {
 
         CreateIndexRequest createIndexReq = new CreateIndexRequest(index);
 
+        final Builder settingsBuilder = Settings.builder();
         if (indexSettings != null) {
-            final Builder settingsBuilder = Settings.builder();
             for (Map.Entry<String, String> entry : indexSettings.entrySet()) {
                 settingsBuilder.put(entry.getKey(), entry.getValue());
             }
+        }
+
+        Map<String, String> targetSettings = null;
+        if (bulkLoad) {
+            Settings target = settingsBuilder.normalizePrefix("index.").build();
+            targetSettings = new LinkedHashMap<>();
+            targetSettings.put(BulkLoadRegistry.REPLICAS, target.get(BulkLoadRegistry.REPLICAS, "1"));
+            targetSettings.put(BulkLoadRegistry.REFRESH_INTERVAL, target.get(BulkLoadRegistry.REFRESH_INTERVAL, "1s"));
+            // recorded even when the load keeps it, finishing the load restores the durability the index was created with
+            targetSettings.put(BulkLoadRegistry.TRANSLOG_DURABILITY, target.get(BulkLoadRegistry.TRANSLOG_DURABILITY, "request"));
+            settingsBuilder.put(BulkLoadRegistry.REPLICAS, 0).put(BulkLoadRegistry.REFRESH_INTERVAL, "-1");
+            if (asyncTranslog) {
+                settingsBuilder.put(BulkLoadRegistry.TRANSLOG_DURABILITY, "async");
+            }
+        }
+
+        if (indexSettings != null || bulkLoad) {
             createIndexReq.settings(settingsBuilder);
         }
 
@@ -132,10 +169,159 @@ public class IndexOperations {
         } catch (Exception e) {
             throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
         }
+        esConnection.invalidateContentHashes(index);
+        if (targetSettings != null && type != null) {
+            RestClient client = esConnection.getElasticsearchConnection().getLowLevelClient();
+            try {
+                Map<String, Object> meta = mappingMeta(client, index).getOrDefault(type, new LinkedHashMap<>());
+                meta.put(BulkLoadRegistry.META, targetSettings);
+                putMappingMeta(client, index, type, meta);
+            } catch (Exception e) {
+                throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+            }
+        } else if (targetSettings != null) {
+            esConnection.getBulkLoadRegistry().started(index, targetSettings);
+        }
         logger.info("Create Index Response : ", createIndexResp);
         return createIndexResp;
     }
 
+    /**
+     * Finish Bulk Load operation ends the initial load of an index created in bulk load mode. The index is force merged while it has no replicas, so the replicas copy the
+     * merged segments instead of merging again, then the settings the index was created with are restored and the operation waits for the index to be green. The force
+     * merge request returns once the merge completed, the socket timeout of the connection must allow for it.
+     *
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            The index created in bulk load mode
+     * @param numberOfReplicas
+     *            Replicas to restore. By default the replicas the index was created with, or 1.
+     * @param refreshInterval
+     *            Refresh interval to restore. By default the refresh interval the index was created with, or 1s.
+     * @param maxNumSegments
+     *            Number of segments per shard to merge to, 0 skips the force merge
+     * @param greenTimeout
+     *            Time to wait for the restored replicas to be allocated
+     * @param translogDurability
+     *            Translog durability to restore. By default the durability the index was created with, or request.
+     * @return The restored settings, the shards of the force merge and the health status of the index
+     */
+    @MediaType(value = ANY, strict = false)
+    public Map<String, Object> finishBulkLoad(@Connection ElasticsearchConnection esConnection,
+            @Placement(order = 1) @DisplayName("Index") @Summary("The index created in bulk load mode") String index,
+            @Placement(tab = "Optional Arguments", order = 1) @Optional @DisplayName("Number of Replicas") @Summary("Replicas to restore, by default the replicas the index was created with") Integer numberOfReplicas,
+            @Placement(tab = "Optional Arguments", order = 2) @Optional @DisplayName("Refresh Interval") @Summary("Refresh interval to restore, by default the refresh interval the index was created with") String refreshInterval,
+            @Placement(tab = "Optional Arguments", order = 3) @Optional(defaultValue = "1") @DisplayName("Max Segments") @Summary("Number of segments per shard to merge to, 0 skips the force merge") int maxNumSegments,
+            @Placement(tab = "Optional Arguments", order = 4) @Optional(defaultValue = "30m") @DisplayName("Green Timeout") @Summary("Time to wait for the index to be green") String greenTimeout,
+            @Placement(tab = "Optional Arguments", order = 5) @Optional @DisplayName("Translog Durability") @Summary("Translog durability to restore, by default the durability the index was created with or request") String translogDurability) {
+
+        RestClient client = esConnection.getElasticsearchConnection().getLowLevelClient();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        Map<String, String> targetSettings = null;
+        String recordedType = null;
+        Map<String, Object> recordedMeta = null;
+        try {
+            for (Map.Entry<String, Map<String, Object>> typeMeta : mappingMeta(client, index).entrySet()) {
+                Object recorded = typeMeta.getValue().get(BulkLoadRegistry.META);
+                if (recorded instanceof Map) {
+                    recordedType = typeMeta.getKey();
+                    recordedMeta = typeMeta.getValue();
+                    targetSettings = new LinkedHashMap<>();
+                    for (Map.Entry<?, ?> setting : ((Map<?, ?>) recorded).entrySet()) {
+                        targetSettings.put(String.valueOf(setting.getKey()), String.valueOf(setting.getValue()));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+        if (targetSettings == null) {
+            targetSettings = esConnection.getBulkLoadRegistry().finished(index);
+        }
+
+        // without recorded settings the defaults are restored, an async translog set for the load is never left behind
+        Map<String, String> restore = new LinkedHashMap<>();
+        restore.put(BulkLoadRegistry.REPLICAS, "1");
+        restore.put(BulkLoadRegistry.REFRESH_INTERVAL, "1s");
+        restore.put(BulkLoadRegistry.TRANSLOG_DURABILITY, "request");
+        if (targetSettings != null) {
+            restore.putAll(targetSettings);
+        }
+        if (numberOfReplicas != null) {
+            restore.put(BulkLoadRegistry.REPLICAS, numberOfReplicas.toString());
+        }
+        if (refreshInterval != null) {
+            restore.put(BulkLoadRegistry.REFRESH_INTERVAL, refreshInterval);
+        }
+        if (translogDurability != null) {
+            restore.put(BulkLoadRegistry.TRANSLOG_DURABILITY, translogDurability);
+        }
+
+        try {
+            if (maxNumSegments > 0) {
+                Map<String, Object> forceMerge = ElasticsearchUtils.responseToMap(
+                        client.performRequest(HttpPost.METHOD_NAME, "/" + index + "/_forcemerge", Collections.singletonMap("max_num_segments", String.valueOf(maxNumSegments))));
+                summary.put("forceMerge", forceMerge.get("_shards"));
+            }
+
+            client.performRequest(HttpPut.METHOD_NAME, "/" + index + "/_settings", Collections.emptyMap(),
+                    new NStringEntity(ElasticsearchUtils.toJson(restore), ContentType.APPLICATION_JSON));
+            summary.put("restoredSettings", restore);
+            if (recordedType != null) {
+                recordedMeta.remove(BulkLoadRegistry.META);
+                putMappingMeta(client, index, recordedType, recordedMeta);
+            }
+
+            // a health request timing out answers 408, the timed out response is checked instead
+            Map<String, String> params = new HashMap<>();
+            params.put("wait_for_status", "green");
+            params.put("timeout", greenTimeout);
+            params.put("ignore", "408");
+            Map<String, Object> health = ElasticsearchUtils.responseToMap(client.performRequest(HttpGet.METHOD_NAME, "/_cluster/health/" + index, params));
+            summary.put("status", health.get("status"));
+            if (Boolean.TRUE.equals(health.get("timed_out"))) {
+                throw new IOException("Index " + index + " is " + health.get("status") + ", not green after " + greenTimeout);
+            }
+        } catch (Exception e) {
+            if (recordedType == null && targetSettings != null && !summary.containsKey("restoredSettings")) {
+                // the settings were not restored, a retry restores them
+                esConnection.getBulkLoadRegistry().started(index, targetSettings);
+            }
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+        logger.info("Finish Bulk Load Response : " + summary);
+        return summary;
+    }
+
+    /**
+     * @return The _meta of the mapping of each type of the index, empty when the type has none
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Map<String, Object>> mappingMeta(RestClient client, String index) throws IOException {
+        Map<String, Object> response = ElasticsearchUtils.responseToMap(client.performRequest(HttpGet.METHOD_NAME, "/" + index + "/_mapping", Collections.emptyMap()));
+        Map<String, Map<String, Object>> metas = new LinkedHashMap<>();
+        for (Object indexMappings : response.values()) {
+            Map<String, Object> mappings = (Map<String, Object>) ((Map<String, Object>) indexMappings).get("mappings");
+            if (mappings == null) {
+                continue;
+            }
+            for (Map.Entry<String, Object> mapping : mappings.entrySet()) {
+                Map<String, Object> meta = (Map<String, Object>) ((Map<String, Object>) mapping.getValue()).get("_meta");
+                metas.put(mapping.getKey(), meta != null ? new LinkedHashMap<>(meta) : new LinkedHashMap<>());
+            }
+        }
+        return metas;
+    }
+
+    /**
+     * Replace the _meta of the mapping of a type
+     */
+    private static void putMappingMeta(RestClient client, String index, String type, Map<String, Object> meta) throws IOException {
+        client.performRequest(HttpPut.METHOD_NAME, "/" + index + "/_mapping/" + type, Collections.emptyMap(),
+                new NStringEntity(ElasticsearchUtils.toJson(Collections.singletonMap("_meta", meta)), ContentType.APPLICATION_JSON));
+    }
+
     /**
      * The Delete index operation allows to delete an existing index.
      *
@@ -181,6 +367,7 @@ public class IndexOperations {
         } catch (Exception e) {
             throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
         }
+        esConnection.invalidateContentHashes(index);
         logger.info("Delete Index Response : " + deleteIndexResp);
         return deleteIndexResp;
     }
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.operations;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.mule.extension.elastic.api.BulkByScrollConfiguration;
+import org.mule.extension.elastic.api.BulkByScrollConfiguration.Conflicts;
+import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
+import org.mule.extension.elastic.internal.error.ElasticsearchError;
+import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
+import org.mule.extension.elastic.internal.querytype.Query;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.mule.runtime.extension.api.annotation.param.Connection;
+import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.ParameterGroup;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Placement;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.mule.runtime.extension.api.runtime.process.CompletionCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         ElasticSearch reindex operation. Documents are copied server side by a background task, so they never pass through the connector.
+ */
+public class ReindexOperations {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReindexOperations.class);
+
+    /**
+     * Destination operation type
+     */
+    public enum OpType {
+        INDEX,
+        CREATE;
+    }
+
+    /**
+     * Reindex operation copies the documents matching the query from the source index to the destination index
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param sourceIndex
+     *            Index the documents are read from
+     * @param sourceType
+     *            Restricts the reindex to a type
+     * @param destinationIndex
+     *            Index the documents are written to
+     * @param destinationType
+     *            Type of the written documents. The source type is kept when not set.
+     * @param pipeline
+     *            Ingest pipeline applied to the written documents
+     * @param opType
+     *            CREATE only writes the documents missing in the destination index
+     * @param taskConfiguration
+     *            Slicing, throttling, conflict and completion parameters
+     * @param queryConfiguration
+     *            Query selecting the documents to copy. All documents are copied when not set.
+     * @param callback
+     *            Completed with the task result, or with the task id when not waiting for completion
+     */
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public void reindex(@Connection ElasticsearchConnection esConnection, @Placement(order = 1) @DisplayName("Source Index") String sourceIndex,
+            @Placement(order = 2) @DisplayName("Source Type") @Optional String sourceType,
+            @Placement(order = 3) @DisplayName("Destination Index") String destinationIndex,
+            @Placement(order = 4) @DisplayName("Destination Type") @Optional String destinationType,
+            @Placement(order = 5) @DisplayName("Pipeline") @Optional @Summary("Ingest pipeline applied to the written documents") String pipeline,
+            @Placement(order = 6) @DisplayName("Op Type") @Optional(defaultValue = "INDEX") @Summary("CREATE only writes the documents missing in the destination index") OpType opType,
+            @ParameterGroup(name = "Task") @Placement(tab = "Optional Arguments") BulkByScrollConfiguration taskConfiguration,
+            @DisplayName("Query Type") @Placement(order = 1, tab = "Query") @Optional Query<? extends QueryBuilder> queryConfiguration,
+            CompletionCallback<String, StatusLine> callback) {
+
+        try {
+            String body = requestBody(sourceIndex, sourceType, destinationIndex, destinationType, pipeline, opType, taskConfiguration, queryConfiguration);
+
+            // the scroll size and the conflict handling of a reindex are part of the request body
+            Map<String, String> params = taskConfiguration.getRequestParameters();
+            params.remove("scroll_size");
+            params.remove("conflicts");
+
+            esConnection.invalidateContentHashes(destinationIndex);
+            Response response = esConnection.getElasticsearchConnection().getLowLevelClient().performRequest(HttpPost.METHOD_NAME, "/_reindex", params,
+                    new NStringEntity(body, ContentType.APPLICATION_JSON));
+            if (!taskConfiguration.isWaitForCompletion()) {
+                callback.success(ElasticsearchUtils.toResult(response));
+                return;
+            }
+
+            String taskId = (String) ElasticsearchUtils.responseToMap(response).get("task");
+            logger.info("Started reindex task " + taskId + " from " + sourceIndex + " to " + destinationIndex);
+            esConnection.getTaskPoller().awaitCompletion(taskId, taskConfiguration.getPollInterval(), callback);
+        } catch (Exception e) {
+            callback.error(new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e));
+        }
+    }
+
+    private static String requestBody(String sourceIndex, String sourceType, String destinationIndex, String destinationType, String pipeline, OpType opType,
+            BulkByScrollConfiguration taskConfiguration, Query<? extends QueryBuilder> queryConfiguration) throws IOException {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            if (taskConfiguration.getConflicts() == Conflicts.PROCEED) {
+                builder.field("conflicts", "proceed");
+            }
+
+            builder.startObject("source").field("index", sourceIndex.trim()).field("size", taskConfiguration.getScrollSize());
+            if (sourceType != null) {
+                builder.field("type", sourceType);
+            }
+            if (queryConfiguration != null) {
+                builder.field("query", queryConfiguration.getQuery());
+            }
+            builder.endObject();
+
+            builder.startObject("dest").field("index", destinationIndex.trim());
+            if (destinationType != null) {
+                builder.field("type", destinationType);
+            }
+            if (pipeline != null) {
+                builder.field("pipeline", pipeline);
+            }
+            if (opType == OpType.CREATE) {
+                builder.field("op_type", "create");
+            }
+            builder.endObject();
+
+            return builder.endObject().string();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.operations;
+
+import static org.mule.runtime.extension.api.annotation.param.MediaType.ANY;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
+import org.mule.extension.elastic.internal.connection.StoredScriptRegistry;
+import org.mule.extension.elastic.internal.error.ElasticsearchError;
+import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.mule.runtime.extension.api.annotation.param.Connection;
+import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Placement;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.mule.runtime.extension.api.annotation.param.display.Text;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ *         ElasticSearch stored script operations. Scripts are stored once per connection and then referenced by id, so the cluster compiles each script once and a scripted
+ *         update only sends the script parameters.
+ */
+public class ScriptOperations {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScriptOperations.class);
+
+    /**
+     * Store a script in the cluster and register it with the connection, so Scripted Update does not upload it again.
+     *
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param scriptId
+     *            Id of the script
+     * @param lang
+     *            Script language
+     * @param source
+     *            Script source
+     * @return Store script result
+     */
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public Result<String, StatusLine> storeScript(@Connection ElasticsearchConnection esConnection, @Placement(order = 1) @DisplayName("Script Id") String scriptId,
+            @Placement(order = 2) @DisplayName("Language") @Optional(defaultValue = "painless") String lang,
+            @Placement(order = 3) @DisplayName("Source") @Text String source) {
+        try {
+            return ElasticsearchUtils.toResult(storeScript(esConnection, scriptId, lang, source));
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    /**
+     * Delete a stored script
+     *
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param scriptId
+     *            Id of the stored script
+     * @return Delete script result
+     */
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public Result<String, StatusLine> deleteScript(@Connection ElasticsearchConnection esConnection, @DisplayName("Script Id") String scriptId) {
+        try {
+            Response response = esConnection.getElasticsearchConnection().getLowLevelClient().performRequest(HttpDelete.METHOD_NAME, "/_scripts/" + scriptId);
+            esConnection.getStoredScriptRegistry().removed(scriptId);
+            return ElasticsearchUtils.toResult(response);
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    /**
+     * Scripted Update operation updates a document with a stored script, in a single request. When the script source is provided, it is stored first unless it was already
+     * stored through this connection.
+     *
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            Name of the index
+     * @param type
+     *            Type of the index
+     * @param documentId
+     *            ID of the document
+     * @param scriptId
+     *            Id of the stored script
+     * @param params
+     *            Script parameters
+     * @param upsert
+     *            Document indexed when the document does not exist yet
+     * @param scriptSource
+     *            Script stored under the script id when it is not yet known
+     * @param lang
+     *            Language of the script source
+     * @param scriptedUpsert
+     *            Run the script whether the document exists or not
+     * @param routing
+     *            Routing is used to determine in which shard the document will reside in
+     * @param refreshPolicy
+     *            Refresh policy is used to control when changes made by the requests are made visible to search
+     * @param retryOnConflict
+     *            How many times to retry the update if the document was changed by another operation between the get and indexing phases of the update
+     * @param fetchSource
+     *            Return the updated source in the response
+     * @return UpdateResponse
+     */
+    @MediaType(value = ANY, strict = false)
+    public UpdateResponse scriptedUpdate(@Connection ElasticsearchConnection esConnection, @Placement(order = 1) @DisplayName("Index") String index,
+            @Placement(order = 2) @DisplayName("Type") String type, @Placement(order = 3) @DisplayName("Document Id") String documentId,
+            @Placement(order = 4) @DisplayName("Script Id") String scriptId,
+            @Placement(order = 5) @Optional @DisplayName("Parameters") Map<String, Object> params,
+            @Placement(order = 6) @Optional @DisplayName("Upsert") Map<String, Object> upsert,
+            @Placement(tab = "Optional Arguments", order = 1) @Optional @Text @DisplayName("Script Source") @Summary("Stored under the script id when it is not yet known") String scriptSource,
+            @Placement(tab = "Optional Arguments", order = 2) @Optional(defaultValue = "painless") @DisplayName("Language") String lang,
+            @Placement(tab = "Optional Arguments", order = 3) @Optional(defaultValue = "false") @DisplayName("Scripted Upsert") boolean scriptedUpsert,
+            @Placement(tab = "Optional Arguments", order = 4) @Optional @DisplayName("Routing") String routing,
+            @Placement(tab = "Optional Arguments", order = 5) @Optional @DisplayName("Refresh policy") RefreshPolicy refreshPolicy,
+            @Placement(tab = "Optional Arguments", order = 6) @Optional(defaultValue = "0") @DisplayName("Retry on Conflict") int retryOnConflict,
+            @Placement(tab = "Optional Arguments", order = 7) @Optional(defaultValue = "false") @DisplayName("Fetch Source") boolean fetchSource) {
+
+        try {
+            if (scriptSource != null && !esConnection.getStoredScriptRegistry().isStored(scriptId, lang, scriptSource)) {
+                storeScript(esConnection, scriptId, lang, scriptSource);
+            }
+
+            // a stored script is referenced without language, the language is part of the stored script
+            UpdateRequest updateRequest = new UpdateRequest(index, type, documentId)
+                    .script(new Script(ScriptType.STORED, null, scriptId, params != null ? params : Collections.emptyMap()));
+            if (upsert != null) {
+                updateRequest.upsert(upsert);
+            }
+            if (routing != null) {
+                updateRequest.routing(routing);
+            }
+            if (refreshPolicy != null) {
+                updateRequest.setRefreshPolicy(refreshPolicy);
+            }
+            if (retryOnConflict != 0) {
+                updateRequest.retryOnConflict(retryOnConflict);
+            }
+            updateRequest.scriptedUpsert(scriptedUpsert);
+            updateRequest.fetchSource(fetchSource);
+
+            esConnection.forgetContentHash(index, type, documentId);
+            UpdateResponse updateResp = esConnection.getElasticsearchConnection().update(updateRequest, ElasticsearchUtils.getContentTypeJsonHeader());
+            logger.info("Scripted update response : " + updateResp);
+            return updateResp;
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    private Response storeScript(ElasticsearchConnection esConnection, String scriptId, String lang, String source) throws Exception {
+        StoredScriptRegistry registry = esConnection.getStoredScriptRegistry();
+        Map<String, Object> script = new HashMap<>();
+        script.put("lang", lang);
+        script.put("source", source);
+
+        Response response = esConnection.getElasticsearchConnection().getLowLevelClient().performRequest(HttpPost.METHOD_NAME, "/_scripts/" + scriptId,
+                Collections.emptyMap(), new NStringEntity(ElasticsearchUtils.toJson(Collections.singletonMap("script", script)), ContentType.APPLICATION_JSON));
+        registry.stored(scriptId, lang, source);
+        logger.debug("Stored script " + scriptId);
+        return response;
+    }
+}
@@ -4,6 +4,7 @@
 package org.mule.extension.elastic.internal.operations;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.http.HttpEntity;
@@ -21,11 +22,14 @@ import org.elasticsearch.client.Response;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.Scroll;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.mule.extension.elastic.api.JsonData;
 import org.mule.extension.elastic.api.SearchRequestConfiguration;
 import org.mule.extension.elastic.api.SearchSourceConfiguration;
+import org.mule.extension.elastic.internal.aggregation.Aggregation;
 import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
+import org.mule.extension.elastic.internal.connection.SlowQueryLog;
 import org.mule.extension.elastic.internal.error.ElasticsearchError;
 import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
 import org.mule.extension.elastic.internal.querytype.Query;
@@ -60,21 +64,121 @@ public class SearchOperations extends BaseSearchOperation {
      *            Different types of Elasticsearch query query configuration
      * @param searchSourceConfiguration
      *            Search source configuration to control the search behavior.
+     * @param aggregations
+     *            Aggregations computed by the cluster over the matching documents
+     * @param hedgeRequest
+     *            Send a duplicate request to another node when the search is slower than the connection hedging percentile. Ignored for scroll searches.
      * @return SearchResponse
      */
 
     @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
     public SearchResponse search(@Connection ElasticsearchConnection esConnection, @ParameterGroup(name = "Search") SearchRequestConfiguration searchRequestConfiguration,
             @DisplayName("Query Type") @Placement(order = 1, tab = "Query") Query<? extends QueryBuilder> queryConfiguration,
-            @DisplayName("Search Source") @Placement(order = 2, tab = "Search Source") @Optional SearchSourceConfiguration searchSourceConfiguration) {
+            @DisplayName("Search Source") @Placement(order = 2, tab = "Search Source") @Optional SearchSourceConfiguration searchSourceConfiguration,
+            @DisplayName("Aggregations") @Placement(order = 1, tab = "Aggregations") @Optional List<Aggregation<? extends AggregationBuilder>> aggregations,
+            @DisplayName("Hedge Request") @Placement(order = 1, tab = "Advanced") @Optional(defaultValue = "false") @Summary("Send a duplicate request to another node when the search is slow") boolean hedgeRequest) {
 
         SearchSourceBuilder searchSourceBuilder = searchSourceConfiguration != null ? getSearchSourceBuilderOptions(searchSourceConfiguration) : new SearchSourceBuilder();
         searchSourceBuilder.query(queryConfiguration.getQuery());
+        if (aggregations != null) {
+            for (Aggregation<? extends AggregationBuilder> aggregation : aggregations) {
+                searchSourceBuilder.aggregation(aggregation.getAggregation());
+            }
+        }
         SearchRequest searchRequest = getSearchRequest(searchRequestConfiguration);
         searchRequest.source(searchSourceBuilder);
 
+        SearchResponse searchResponse;
+        long start = System.currentTimeMillis();
+        try {
+            if (hedgeRequest && searchRequest.scroll() == null) {
+                searchResponse = esConnection.getHedgedRequestExecutor().execute("search", (preference, listener) -> {
+                    SearchRequest hedgedRequest = getSearchRequest(searchRequestConfiguration);
+                    hedgedRequest.source(searchSourceBuilder);
+                    if (preference != null) {
+                        hedgedRequest.preference(preference);
+                    }
+                    esConnection.getElasticsearchConnection().searchAsync(hedgedRequest, listener, ElasticsearchUtils.getContentTypeJsonHeader());
+                });
+            } else {
+                searchResponse = esConnection.getElasticsearchConnection().search(searchRequest, ElasticsearchUtils.getContentTypeJsonHeader());
+            }
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+
+        SlowQueryLog slowQueryLog = esConnection.getSlowQueryLog();
+        if (slowQueryLog != null) {
+            slowQueryLog.record(searchRequest, searchResponse, System.currentTimeMillis() - start);
+        }
+        return searchResponse;
+    }
+
+    /**
+     * Count the documents matching the query without fetching any hit
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            Restricts the count to an index
+     * @param type
+     *            Restricts the count to a type
+     * @param routing
+     *            Restricts the count to the shards of a routing value
+     * @param queryConfiguration
+     *            Different types of Elasticsearch query configuration
+     * @return Number of matching documents
+     */
+    @MediaType(value = MediaType.ANY, strict = false)
+    public long count(@Connection ElasticsearchConnection esConnection, @Optional String index, @Optional String type, @Optional String routing,
+            @DisplayName("Query Type") @Placement(order = 1, tab = "Query") Query<? extends QueryBuilder> queryConfiguration) {
+
+        String resource = type != null ? "/" + type + "/_count" : "/_count";
+        resource = index != null ? "/" + index.trim() + resource : resource;
+        Map<String, String> params = routing != null ? Collections.singletonMap("routing", routing) : Collections.emptyMap();
+        HttpEntity entity = new NStringEntity(new SearchSourceBuilder().query(queryConfiguration.getQuery()).toString(), ContentType.APPLICATION_JSON);
+
+        try {
+            Response response = esConnection.getElasticsearchConnection().getLowLevelClient().performRequest(HttpGet.METHOD_NAME, resource, params, entity);
+            return ((Number) ElasticsearchUtils.responseToMap(response).get("count")).longValue();
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    /**
+     * Check whether any document matches the query. The search stops at the first match on each shard and returns neither hits nor source.
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            Restricts the check to an index
+     * @param type
+     *            Restricts the check to a type
+     * @param routing
+     *            Restricts the check to the shards of a routing value
+     * @param queryConfiguration
+     *            Different types of Elasticsearch query configuration
+     * @return true if at least one document matches
+     */
+    @MediaType(value = MediaType.ANY, strict = false)
+    public boolean exists(@Connection ElasticsearchConnection esConnection, @Optional String index, @Optional String type, @Optional String routing,
+            @DisplayName("Query Type") @Placement(order = 1, tab = "Query") Query<? extends QueryBuilder> queryConfiguration) {
+
+        SearchRequest searchRequest = new SearchRequest();
+        if (index != null) {
+            searchRequest.indices(index);
+        }
+        if (type != null) {
+            searchRequest.types(type);
+        }
+        if (routing != null) {
+            searchRequest.routing(routing);
+        }
+        searchRequest.source(new SearchSourceBuilder().query(queryConfiguration.getQuery()).size(0).terminateAfter(1).fetchSource(false));
+
         try {
-            return esConnection.getElasticsearchConnection().search(searchRequest, ElasticsearchUtils.getContentTypeJsonHeader());
+            return esConnection.getElasticsearchConnection().search(searchRequest, ElasticsearchUtils.getContentTypeJsonHeader()).getHits().getTotalHits() > 0;
         } catch (Exception e) {
             throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
         }
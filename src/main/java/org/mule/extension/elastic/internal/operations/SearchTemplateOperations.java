@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.operations;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Response;
+import org.mule.extension.elastic.api.JsonData;
+import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
+import org.mule.extension.elastic.internal.connection.StoredScriptRegistry;
+import org.mule.extension.elastic.internal.error.ElasticsearchError;
+import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.mule.runtime.extension.api.annotation.param.Connection;
+import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.ParameterGroup;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Placement;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.mule.runtime.extension.api.annotation.param.display.Text;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         ElasticSearch stored search template operations. Templates are uploaded once per connection and then referenced by id, so each search only sends the template
+ *         parameters.
+ */
+public class SearchTemplateOperations {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchTemplateOperations.class);
+
+    private static final String TEMPLATE_LANG = "mustache";
+
+    /**
+     * Store a mustache search template in the cluster and register it with the connection, so Search Template does not upload it again.
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param templateId
+     *            Id of the search template
+     * @param template
+     *            JSON file or string containing the mustache search template
+     * @return Store template result
+     */
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public Result<String, StatusLine> storeSearchTemplate(@Connection ElasticsearchConnection esConnection, @DisplayName("Template Id") String templateId,
+            @ParameterGroup(name = "Template") JsonData template) {
+
+        try {
+            String source = template.getJsonfile() != null ? ElasticsearchUtils.readFileToString(template.getJsonfile()) : template.getJsonText();
+            return ElasticsearchUtils.toResult(storeTemplate(esConnection, templateId, source));
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    /**
+     * Render a stored search template with the given parameters, without executing the search
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param templateId
+     *            Id of the stored search template
+     * @param params
+     *            Template parameters
+     * @return Rendered search request
+     */
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public Result<String, StatusLine> renderSearchTemplate(@Connection ElasticsearchConnection esConnection, @DisplayName("Template Id") String templateId,
+            @Optional @DisplayName("Parameters") Map<String, Object> params) {
+
+        try {
+            Map<String, Object> body = Collections.singletonMap("params", params != null ? params : Collections.emptyMap());
+            Response response = esConnection.getElasticsearchConnection().getLowLevelClient().performRequest(HttpGet.METHOD_NAME, "/_render/template/" + templateId,
+                    Collections.emptyMap(), new NStringEntity(ElasticsearchUtils.toJson(body), ContentType.APPLICATION_JSON));
+            return ElasticsearchUtils.toResult(response);
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    /**
+     * Execute a search using a stored template. When the template source is provided, it is stored first unless it was already stored through this connection.
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            Restricts the search request to an index
+     * @param templateId
+     *            Id of the stored search template
+     * @param params
+     *            Template parameters
+     * @param templateSource
+     *            Mustache search template stored under the id when it is not yet known
+     * @return Search Result
+     */
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public Result<String, StatusLine> searchTemplate(@Connection ElasticsearchConnection esConnection, @Optional String index,
+            @Placement(order = 1) @DisplayName("Template Id") String templateId,
+            @Placement(order = 2) @Optional @DisplayName("Parameters") Map<String, Object> params,
+            @Placement(tab = "Optional Arguments", order = 1) @Optional @Text @DisplayName("Template Source") @Summary("Stored under the template id when it is not yet known") String templateSource) {
+
+        String resource = index != null ? "/" + index.trim() + "/_search/template" : "/_search/template";
+
+        try {
+            if (templateSource != null && !esConnection.getStoredScriptRegistry().isStored(templateId, TEMPLATE_LANG, templateSource)) {
+                storeTemplate(esConnection, templateId, templateSource);
+            }
+
+            Map<String, Object> body = new HashMap<>();
+            body.put("id", templateId);
+            body.put("params", params != null ? params : Collections.emptyMap());
+            Response response = esConnection.getElasticsearchConnection().getLowLevelClient().performRequest(HttpGet.METHOD_NAME, resource, Collections.emptyMap(),
+                    new NStringEntity(ElasticsearchUtils.toJson(body), ContentType.APPLICATION_JSON));
+            return ElasticsearchUtils.toResult(response);
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    /**
+     * Delete a stored search template
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param templateId
+     *            Id of the stored search template
+     * @return Delete template result
+     */
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public Result<String, StatusLine> deleteSearchTemplate(@Connection ElasticsearchConnection esConnection, @DisplayName("Template Id") String templateId) {
+        try {
+            Response response = esConnection.getElasticsearchConnection().getLowLevelClient().performRequest(HttpDelete.METHOD_NAME, "/_scripts/" + templateId);
+            esConnection.getStoredScriptRegistry().removed(templateId);
+            return ElasticsearchUtils.toResult(response);
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    private Response storeTemplate(ElasticsearchConnection esConnection, String templateId, String source) throws Exception {
+        StoredScriptRegistry registry = esConnection.getStoredScriptRegistry();
+        Map<String, Object> script = new HashMap<>();
+        script.put("lang", TEMPLATE_LANG);
+        script.put("source", source);
+
+        Response response = esConnection.getElasticsearchConnection().getLowLevelClient().performRequest(HttpPost.METHOD_NAME, "/_scripts/" + templateId,
+                Collections.emptyMap(), new NStringEntity(ElasticsearchUtils.toJson(Collections.singletonMap("script", script)), ContentType.APPLICATION_JSON));
+        registry.stored(templateId, TEMPLATE_LANG, source);
+        logger.debug("Stored search template " + templateId);
+        return response;
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.operations;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
+import org.mule.extension.elastic.internal.error.ElasticsearchError;
+import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.mule.runtime.extension.api.annotation.param.Connection;
+import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.mule.runtime.extension.api.runtime.process.CompletionCallback;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         ElasticSearch background task operations
+ */
+public class TaskOperations {
+
+    /**
+     * Kind of a throttled background task
+     */
+    public enum BulkByScrollTask {
+        REINDEX("_reindex"),
+        UPDATE_BY_QUERY("_update_by_query"),
+        DELETE_BY_QUERY("_delete_by_query");
+
+        private final String endpoint;
+
+        BulkByScrollTask(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    /**
+     * Get the status of a background task
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param taskId
+     *            Id of the task
+     * @return Task status, including the progress of update by query, delete by query and reindex tasks
+     */
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public Result<String, StatusLine> getTask(@Connection ElasticsearchConnection esConnection, @DisplayName("Task Id") String taskId) {
+        try {
+            return ElasticsearchUtils.toResult(esConnection.getElasticsearchConnection().getLowLevelClient().performRequest(HttpGet.METHOD_NAME, "/_tasks/" + taskId));
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    /**
+     * Wait for a background task to complete. The task is polled without blocking a Mule thread. A task that failed, or a by-query or reindex task that completed
+     * with bulk or search failures, raises an error carrying them.
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param taskId
+     *            Id of the task
+     * @param pollInterval
+     *            Interval in milliseconds between two task status polls
+     * @param callback
+     *            Completed with the task result
+     */
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public void waitForTask(@Connection ElasticsearchConnection esConnection, @DisplayName("Task Id") String taskId,
+            @Optional(defaultValue = "1000") @DisplayName("Poll Interval") @Summary("Interval in milliseconds between two task status polls") long pollInterval,
+            CompletionCallback<String, StatusLine> callback) {
+        esConnection.getTaskPoller().awaitCompletion(taskId, pollInterval, callback);
+    }
+
+    /**
+     * Get the progress of a reindex, update by query or delete by query task
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param taskId
+     *            Id of the task
+     * @return Progress summary with the document counters, the completion percentage and whether the task completed
+     */
+    @MediaType(value = MediaType.ANY, strict = false)
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getTaskProgress(@Connection ElasticsearchConnection esConnection, @DisplayName("Task Id") String taskId) {
+        try {
+            Map<String, Object> task = ElasticsearchUtils.responseToMap(esConnection.getElasticsearchConnection().getLowLevelClient().performRequest(HttpGet.METHOD_NAME,
+                    "/_tasks/" + taskId));
+            Map<String, Object> status = task.get("task") instanceof Map ? (Map<String, Object>) ((Map<String, Object>) task.get("task")).get("status") : null;
+
+            Map<String, Object> progress = new LinkedHashMap<>();
+            progress.put("completed", Boolean.TRUE.equals(task.get("completed")));
+            if (status != null) {
+                long total = counter(status, "total");
+                long processed = counter(status, "created") + counter(status, "updated") + counter(status, "deleted") + counter(status, "version_conflicts")
+                        + counter(status, "noops");
+                for (String counter : new String[] { "total", "created", "updated", "deleted", "batches", "version_conflicts", "noops" }) {
+                    progress.put(counter, counter(status, counter));
+                }
+                progress.put("requests_per_second", status.get("requests_per_second") instanceof Number ? status.get("requests_per_second") : 0);
+                progress.put("percent", total > 0 ? processed * 100.0 / total : 0.0);
+            }
+            return progress;
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    /**
+     * @return The counter of a task status, 0 when the status does not report it, as for the tasks other than reindex and by query tasks
+     */
+    private static long counter(Map<String, Object> status, String name) {
+        Object value = status.get(name);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    /**
+     * Change the throttle of a running reindex, update by query or delete by query task. A throttle increase takes effect immediately, a decrease after the current
+     * batch.
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param taskId
+     *            Id of the task
+     * @param taskType
+     *            Kind of the task
+     * @param requestsPerSecond
+     *            New throttle in documents per second, -1 disables throttling
+     * @return Rethrottle result
+     */
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public Result<String, StatusLine> rethrottle(@Connection ElasticsearchConnection esConnection, @DisplayName("Task Id") String taskId,
+            @Optional(defaultValue = "REINDEX") @DisplayName("Task Type") BulkByScrollTask taskType,
+            @DisplayName("Requests Per Second") @Summary("New throttle in documents per second, -1 disables throttling") float requestsPerSecond) {
+        try {
+            String throttle = requestsPerSecond > 0 ? Float.toString(requestsPerSecond) : "-1";
+            return ElasticsearchUtils.toResult(esConnection.getElasticsearchConnection().getLowLevelClient().performRequest(HttpPost.METHOD_NAME,
+                    "/" + taskType.endpoint + "/" + taskId + "/_rethrottle", Collections.singletonMap("requests_per_second", throttle)));
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    /**
+     * Cancel a background task
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param taskId
+     *            Id of the task
+     * @return Cancel task result
+     */
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public Result<String, StatusLine> cancelTask(@Connection ElasticsearchConnection esConnection, @DisplayName("Task Id") String taskId) {
+        try {
+            return ElasticsearchUtils.toResult(esConnection.getElasticsearchConnection().getLowLevelClient().performRequest(HttpPost.METHOD_NAME,
+                    "/_tasks/" + taskId + "/_cancel", Collections.emptyMap()));
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+}
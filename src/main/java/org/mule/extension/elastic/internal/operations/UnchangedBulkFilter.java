@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.operations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.mule.extension.elastic.internal.connection.ContentHashIndex;
+import org.mule.extension.elastic.internal.spool.BulkActions;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Removes from a bulk payload the index and create actions whose source matches the content hash index, and updates the hash index from the bulk response.
+ */
+class UnchangedBulkFilter {
+
+    private final ContentHashIndex hashIndex;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final List<long[]> kept = new ArrayList<>();
+    private int skipped;
+
+    UnchangedBulkFilter(ContentHashIndex hashIndex) {
+        this.hashIndex = hashIndex;
+    }
+
+    /**
+     * Filter the payload
+     * 
+     * @param payload
+     *            NDJSON bulk payload
+     * @param defaultIndex
+     *            Index of the actions without _index
+     * @param defaultType
+     *            Type of the actions without _type
+     * @return The payload of the changed documents and of the other actions
+     */
+    @SuppressWarnings("unchecked")
+    byte[] filter(byte[] payload, String defaultIndex, String defaultType) throws IOException {
+        List<byte[]> actions = new ArrayList<>();
+        BulkActions.split(payload, actions);
+        for (byte[] action : actions) {
+            int metadataEnd = metadataEnd(action);
+            Map<String, Object> metadataLine = metadataLine(action, metadataEnd);
+            String operation = metadataLine.keySet().iterator().next();
+            Map<String, Object> metadata = (Map<String, Object>) metadataLine.get(operation);
+            Object id = metadata.get("_id");
+
+            long key = 0;
+            long indexHash = 0;
+            long content = 0;
+            if (id != null) {
+                String index = metadata.containsKey("_index") ? (String) metadata.get("_index") : defaultIndex;
+                key = ContentHashIndex.key(index, metadata.containsKey("_type") ? (String) metadata.get("_type") : defaultType, id.toString());
+                indexHash = ContentHashIndex.index(String.valueOf(index));
+                if ("index".equals(operation) || "create".equals(operation)) {
+                    int sourceEnd = action[action.length - 1] == '\n' ? action.length - 1 : action.length;
+                    content = ContentHashIndex.content(action, metadataEnd + 1, Math.max(0, sourceEnd - metadataEnd - 1));
+                    if (hashIndex.isUnchanged(key, content)) {
+                        skipped++;
+                        continue;
+                    }
+                }
+            }
+            // content 0 marks the update and delete actions, whose document is forgotten once written
+            kept.add(new long[] { key, indexHash, content });
+            body.write(action, 0, action.length);
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Forget the recorded content of the documents of a bulk payload sent without comparing their content
+     * 
+     * @param hashIndex
+     *            Content hash index of the connection
+     * @param payload
+     *            NDJSON bulk payload
+     * @param defaultIndex
+     *            Index of the actions without _index
+     * @param defaultType
+     *            Type of the actions without _type
+     */
+    @SuppressWarnings("unchecked")
+    static void forget(ContentHashIndex hashIndex, byte[] payload, String defaultIndex, String defaultType) throws IOException {
+        List<byte[]> actions = new ArrayList<>();
+        BulkActions.split(payload, actions);
+        for (byte[] action : actions) {
+            Map<String, Object> metadataLine = metadataLine(action, metadataEnd(action));
+            Map<String, Object> metadata = (Map<String, Object>) metadataLine.values().iterator().next();
+            Object id = metadata.get("_id");
+            if (id != null) {
+                String index = metadata.containsKey("_index") ? (String) metadata.get("_index") : defaultIndex;
+                hashIndex.remove(ContentHashIndex.key(index, metadata.containsKey("_type") ? (String) metadata.get("_type") : defaultType, id.toString()));
+            }
+        }
+    }
+
+    private static int metadataEnd(byte[] action) {
+        int metadataEnd = 0;
+        while (metadataEnd < action.length && action[metadataEnd] != '\n') {
+            metadataEnd++;
+        }
+        return metadataEnd;
+    }
+
+    private static Map<String, Object> metadataLine(byte[] action, int metadataEnd) throws IOException {
+        try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY, action, 0, metadataEnd)) {
+            return parser.map();
+        }
+    }
+
+    /**
+     * Record the written documents in the hash index
+     * 
+     * @param response
+     *            Bulk response
+     */
+    @SuppressWarnings("unchecked")
+    void record(Map<String, Object> response) {
+        List<Object> items = (List<Object>) response.get("items");
+        for (int i = 0; i < items.size() && i < kept.size(); i++) {
+            long[] action = kept.get(i);
+            if (action[0] == 0) {
+                continue;
+            }
+            Map<String, Object> result = (Map<String, Object>) ((Map<String, Object>) items.get(i)).values().iterator().next();
+            if (((Number) result.get("status")).intValue() >= 300) {
+                continue;
+            }
+            if (action[2] != 0) {
+                hashIndex.put(action[0], action[1], action[2]);
+            } else {
+                hashIndex.remove(action[0]);
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return kept.isEmpty();
+    }
+
+    int getSkipped() {
+        return skipped;
+    }
+}
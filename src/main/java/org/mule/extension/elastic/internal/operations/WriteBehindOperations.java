@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.operations;
+
+import static org.mule.runtime.extension.api.annotation.param.MediaType.ANY;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.mule.extension.elastic.api.IndexDocumentOptions;
+import org.mule.extension.elastic.api.JsonData;
+import org.mule.extension.elastic.internal.connection.ContentHashIndex;
+import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
+import org.mule.extension.elastic.internal.error.ElasticsearchError;
+import org.mule.extension.elastic.internal.error.exception.ElasticsearchException;
+import org.mule.extension.elastic.internal.spool.WriteBehindDrainer;
+import org.mule.extension.elastic.internal.spool.WriteBehindJournal;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.mule.runtime.extension.api.annotation.param.Connection;
+import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.ParameterGroup;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Placement;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         ElasticSearch write-behind operations. The write requests are appended to the local journal of the connection and return immediately; the journal is drained to
+ *         the cluster in bulk in the background, at least once and in order. Requires a spool directory in the connection configuration.
+ */
+public class WriteBehindOperations {
+
+    /**
+     * Index Document Write Behind operation appends an index request to the write-behind journal
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            Name of the index
+     * @param type
+     *            Type of the index
+     * @param documentId
+     *            ID of the document. Without an id a document drained twice after a failure is indexed twice, unless an id is generated.
+     * @param inputSource
+     *            Get the JSON input file path or the document source
+     * @param routing
+     *            Routing is used to determine in which shard the document will reside in
+     * @param pipeline
+     *            Name of the ingest pipeline to be executed before indexing the document
+     * @param generateId
+     *            Generate a time ordered id on the client when no document id is set, so a request drained again after a failure replaces the document instead of
+     *            indexing it twice. The write then no longer uses the faster path of the ids generated by Elasticsearch.
+     * @return Number of requests waiting in the journal
+     */
+    @MediaType(value = ANY, strict = false)
+    public long indexDocumentWriteBehind(@Connection ElasticsearchConnection esConnection, @Placement(order = 1) @DisplayName("Index") String index,
+            @Placement(order = 2) @DisplayName("Type") String type, @Placement(order = 3) @DisplayName("Document Id") @Optional String documentId,
+            @Placement(order = 4) @ParameterGroup(name = "Input Document") IndexDocumentOptions inputSource,
+            @Placement(tab = "Optional Arguments", order = 1) @DisplayName("Routing") @Optional String routing,
+            @Placement(tab = "Optional Arguments", order = 2) @DisplayName("Pipeline") @Optional @Summary("The name of the ingest pipeline to be executed before indexing the document") String pipeline,
+            @Placement(tab = "Optional Arguments", order = 3) @DisplayName("Generate Id") @Optional(defaultValue = "false") @Summary("Generate a time ordered id on the client when no document id is set") boolean generateId) {
+
+        WriteBehindJournal journal = journal(esConnection);
+        String id = documentId == null && generateId ? UUIDs.base64UUID() : documentId;
+        try (XContentBuilder action = XContentFactory.jsonBuilder()) {
+            action.startObject().startObject("index").field("_index", index).field("_type", type);
+            if (id != null) {
+                action.field("_id", id);
+            }
+            if (routing != null) {
+                action.field("_routing", routing);
+            }
+            if (pipeline != null) {
+                action.field("pipeline", pipeline);
+            }
+            action.endObject().endObject();
+
+            // the bulk format requires the source on a single line
+            Map<String, Object> source = inputSource.getJsonInputPath() != null
+                    ? XContentHelper.convertToMap(XContentType.JSON.xContent(), ElasticsearchUtils.readFileToString(inputSource.getJsonInputPath()), false)
+                    : inputSource.getDocumentSource();
+
+            esConnection.forgetContentHash(index, type, id);
+            journal.append("", (action.string() + "\n" + ElasticsearchUtils.toJson(source) + "\n").getBytes(StandardCharsets.UTF_8));
+            return journal.getPendingRecords();
+        } catch (Exception e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    /**
+     * Bulk Write Behind operation appends a bulk request to the write-behind journal
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @param index
+     *            Default index of the bulk actions
+     * @param type
+     *            Default type of the bulk actions
+     * @param jsonData
+     *            Input file / data with list of operations to be performed like index, delete, update.
+     * @return Number of requests waiting in the journal
+     */
+    @MediaType(value = ANY, strict = false)
+    public long bulkWriteBehind(@Connection ElasticsearchConnection esConnection, @Optional String index, @Optional String type,
+            @ParameterGroup(name = "Input data") JsonData jsonData) {
+        String resource = type != null ? "/" + type : "";
+        resource = index != null ? "/" + index + resource : resource;
+
+        WriteBehindJournal journal = journal(esConnection);
+        try {
+            String payload = jsonData.getJsonfile() != null ? ElasticsearchUtils.readFileToString(jsonData.getJsonfile()) : jsonData.getJsonText();
+            if (!payload.endsWith("\n")) {
+                payload = payload + "\n";
+            }
+            byte[] actions = payload.getBytes(StandardCharsets.UTF_8);
+            ContentHashIndex hashIndex = esConnection.getActiveContentHashIndex();
+            if (hashIndex != null) {
+                UnchangedBulkFilter.forget(hashIndex, actions, index, type);
+            }
+            journal.append(resource, actions);
+            return journal.getPendingRecords();
+        } catch (IOException e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    /**
+     * Get the state of the write-behind journal and of its drain
+     * 
+     * @param esConnection
+     *            The Elasticsearch connection
+     * @return Pending requests, journal segments, drained, failed and retried bulk actions and the last drain error
+     */
+    @MediaType(value = ANY, strict = false)
+    public Map<String, Object> getWriteBehindStatus(@Connection ElasticsearchConnection esConnection) {
+        WriteBehindJournal journal = journal(esConnection);
+        WriteBehindDrainer drainer = esConnection.getWriteBehindDrainer();
+        try {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("pendingRequests", journal.getPendingRecords());
+            status.put("segments", journal.getSegments());
+            status.put("drainedActions", drainer.getDrainedActions());
+            status.put("failedActions", drainer.getFailedActions());
+            status.put("retries", drainer.getRetries());
+            status.put("lastError", drainer.getLastError());
+            return status;
+        } catch (IOException e) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, e);
+        }
+    }
+
+    private static WriteBehindJournal journal(ElasticsearchConnection esConnection) {
+        WriteBehindJournal journal = esConnection.getWriteBehindJournal();
+        if (journal == null) {
+            throw new ElasticsearchException(ElasticsearchError.OPERATION_FAILED, new IllegalStateException("Write-behind requires a spool directory in the connection configuration"));
+        }
+        return journal;
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.source;
+
+import static org.mule.runtime.extension.api.runtime.source.PollContext.PollItemStatus.ACCEPTED;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.mule.extension.elastic.internal.connection.ElasticsearchConnection;
+import org.mule.extension.elastic.internal.querytype.Query;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.mule.runtime.api.connection.ConnectionException;
+import org.mule.runtime.api.connection.ConnectionProvider;
+import org.mule.runtime.api.exception.MuleException;
+import org.mule.runtime.extension.api.annotation.Alias;
+import org.mule.runtime.extension.api.annotation.param.Connection;
+import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Placement;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.mule.runtime.extension.api.annotation.source.BackPressure;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.mule.runtime.extension.api.runtime.source.BackPressureMode;
+import org.mule.runtime.extension.api.runtime.source.PollContext;
+import org.mule.runtime.extension.api.runtime.source.PollContext.PollItemStatus;
+import org.mule.runtime.extension.api.runtime.source.PollingSource;
+import org.mule.runtime.extension.api.runtime.source.SourceCallbackContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Polls an index for the documents added or changed since the previous poll. The documents are read in watermark field order with search_after and emitted as
+ *         batches (JSON arrays of hits). The sort values of the last emitted hit are the watermark, which the runtime persists in the object store so that processing
+ *         resumes where it stopped after a restart.
+ */
+@Alias("document-listener")
+@DisplayName("On New or Updated Document")
+@MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+@BackPressure(defaultMode = BackPressureMode.WAIT, supportedModes = { BackPressureMode.WAIT, BackPressureMode.DROP })
+public class DocumentPollingSource extends PollingSource<String, Void> {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentPollingSource.class);
+
+    @Connection
+    private ConnectionProvider<ElasticsearchConnection> connectionProvider;
+
+    /**
+     * Index to poll
+     */
+    @Parameter
+    @Placement(order = 1)
+    @DisplayName("Index")
+    private String index;
+
+    /**
+     * Restricts the poll to a type
+     */
+    @Parameter
+    @Optional
+    @Placement(order = 2)
+    @DisplayName("Type")
+    private String type;
+
+    /**
+     * Timestamp or sequence field increasing when a document is added or changed
+     */
+    @Parameter
+    @Placement(order = 3)
+    @DisplayName("Watermark Field")
+    @Summary("Timestamp or sequence field increasing when a document is added or changed")
+    private String watermarkField;
+
+    /**
+     * Field with unique values ordering the documents sharing a watermark value
+     */
+    @Parameter
+    @Optional(defaultValue = "_id")
+    @Placement(order = 4)
+    @DisplayName("Tie Breaker Field")
+    @Summary("Field with unique values ordering the documents sharing a watermark value")
+    private String tieBreakerField;
+
+    /**
+     * Number of documents emitted per batch
+     */
+    @Parameter
+    @Optional(defaultValue = "100")
+    @Placement(tab = "Optional Arguments", order = 1)
+    @DisplayName("Batch Size")
+    private int batchSize;
+
+    /**
+     * Maximum number of batches emitted by a single poll
+     */
+    @Parameter
+    @Optional(defaultValue = "10")
+    @Placement(tab = "Optional Arguments", order = 2)
+    @DisplayName("Max Batches Per Poll")
+    @Summary("Maximum number of batches emitted by a single poll")
+    private int maxBatchesPerPoll;
+
+    /**
+     * Query restricting the polled documents
+     */
+    @Parameter
+    @Optional
+    @Placement(order = 1, tab = "Query")
+    @DisplayName("Query Type")
+    private Query<? extends QueryBuilder> queryConfiguration;
+
+    private ElasticsearchConnection connection;
+
+    @Override
+    protected void doStart() throws MuleException {
+        connection = connectionProvider.connect();
+    }
+
+    @Override
+    protected void doStop() {
+        if (connection != null) {
+            connectionProvider.disconnect(connection);
+            connection = null;
+        }
+    }
+
+    @Override
+    public void poll(PollContext<String, Void> pollContext) {
+        SortWatermark watermark = (SortWatermark) pollContext.getWatermark().orElse(null);
+
+        for (int batch = 0; batch < maxBatchesPerPoll && !pollContext.isSourceStopping(); batch++) {
+            SearchHit[] hits;
+            try {
+                hits = fetchBatch(watermark);
+            } catch (IOException e) {
+                // the cluster could not be reached, the runtime reconnects the source
+                pollContext.onConnectionException(new ConnectionException("Polling of index " + index + " failed: " + e.getMessage(), e));
+                return;
+            } catch (ElasticsearchStatusException e) {
+                logger.error("Polling of index " + index + " was rejected: " + e.getMessage(), e);
+                return;
+            }
+            if (hits.length == 0) {
+                return;
+            }
+
+            SortWatermark batchWatermark = new SortWatermark(hits[hits.length - 1].getSortValues());
+            String batchId = hits[0].getId() + ".." + hits[hits.length - 1].getId();
+            String payload;
+            try {
+                payload = toJson(hits);
+            } catch (IOException e) {
+                logger.error("Unable to serialize the documents polled from index " + index + ": " + e.getMessage(), e);
+                return;
+            }
+
+            PollItemStatus status = pollContext.accept(item -> item.setResult(Result.<String, Void>builder()
+                    .output(payload)
+                    .mediaType(org.mule.runtime.api.metadata.MediaType.APPLICATION_JSON)
+                    .build())
+                    .setWatermark(batchWatermark)
+                    .setId(batchId));
+
+            if (status != ACCEPTED) {
+                // the remaining documents are picked up by the next poll, starting from the persisted watermark
+                logger.debug("Batch " + batchId + " of index " + index + " was not accepted: " + status);
+                return;
+            }
+            watermark = batchWatermark;
+
+            if (hits.length < batchSize) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onRejectedItem(Result<String, Void> result, SourceCallbackContext callbackContext) {
+        logger.warn("Batch of documents polled from index " + index + " was rejected by the flow and will be polled again");
+    }
+
+    private SearchHit[] fetchBatch(SortWatermark watermark) throws IOException {
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder().size(batchSize)
+                .sort(watermarkField, SortOrder.ASC)
+                .sort(tieBreakerField, SortOrder.ASC);
+        if (queryConfiguration != null) {
+            searchSourceBuilder.query(queryConfiguration.getQuery());
+        }
+        if (watermark != null) {
+            searchSourceBuilder.searchAfter(watermark.getSortValues());
+        }
+
+        SearchRequest searchRequest = new SearchRequest(index.trim()).source(searchSourceBuilder);
+        if (type != null) {
+            searchRequest.types(type);
+        }
+        SearchResponse searchResponse = connection.getElasticsearchConnection().search(searchRequest, ElasticsearchUtils.getContentTypeJsonHeader());
+        return searchResponse.getHits().getHits();
+    }
+
+    private static String toJson(SearchHit[] hits) throws IOException {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startArray();
+            for (SearchHit hit : hits) {
+                Map<String, Object> source = hit.getSourceAsMap();
+                builder.startObject()
+                        .field("_index", hit.getIndex())
+                        .field("_type", hit.getType())
+                        .field("_id", hit.getId())
+                        .field("_source", source)
+                        .array("sort", hit.getSortValues())
+                        .endObject();
+            }
+            return builder.endArray().string();
+        }
+    }
+}
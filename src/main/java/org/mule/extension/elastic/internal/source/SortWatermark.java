@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.source;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Sort values (watermark field and tie breaker) of the last document emitted by the polling source. The values are used as the search_after of the next poll.
+ */
+public class SortWatermark implements Comparable<SortWatermark>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Object[] sortValues;
+
+    public SortWatermark(Object[] sortValues) {
+        this.sortValues = sortValues;
+    }
+
+    public Object[] getSortValues() {
+        return sortValues;
+    }
+
+    @Override
+    public int compareTo(SortWatermark other) {
+        int length = Math.min(sortValues.length, other.sortValues.length);
+        for (int i = 0; i < length; i++) {
+            int result = compareValues(sortValues[i], other.sortValues[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(sortValues.length, other.sortValues.length);
+    }
+
+    private static int compareValues(Object value, Object other) {
+        if (value == null || other == null) {
+            return value == null ? (other == null ? 0 : -1) : 1;
+        }
+        if (value instanceof Number && other instanceof Number) {
+            if ((value instanceof Long || value instanceof Integer) && (other instanceof Long || other instanceof Integer)) {
+                return Long.compare(((Number) value).longValue(), ((Number) other).longValue());
+            }
+            return Double.compare(((Number) value).doubleValue(), ((Number) other).doubleValue());
+        }
+        if (value instanceof Number || other instanceof Number) {
+            // numbers sort before the other values, so a number is never equal to its string
+            return value instanceof Number ? -1 : 1;
+        }
+        return value.toString().compareTo(other.toString());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof SortWatermark && compareTo((SortWatermark) other) == 0;
+    }
+
+    /**
+     * Consistent with compareTo: the numbers equal as a long or a double, such as 5 and 5L, hash alike
+     */
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (Object value : sortValues) {
+            int valueHash = 0;
+            if (value instanceof Number) {
+                valueHash = Double.hashCode(((Number) value).doubleValue());
+            } else if (value != null) {
+                valueHash = value.toString().hashCode();
+            }
+            hash = 31 * hash + valueHash;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(sortValues);
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.spool;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Splits an NDJSON bulk payload into its actions. A delete action is a single metadata line, the index, create and update actions are followed by a source line.
+ */
+public final class BulkActions {
+
+    private static final byte[] DELETE = "delete".getBytes(StandardCharsets.US_ASCII);
+
+    private BulkActions() {
+    }
+
+    /**
+     * Split the payload into actions, each action holding its metadata and source lines
+     * 
+     * @param payload
+     *            NDJSON bulk payload
+     * @param actions
+     *            List the actions are added to
+     */
+    public static void split(byte[] payload, List<byte[]> actions) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        int offset = 0;
+        while (offset < payload.length) {
+            int start = skipBlankLines(buffer, offset, payload.length);
+            if (start == payload.length) {
+                break;
+            }
+            int end = actionEnd(buffer, start, payload.length);
+            actions.add(Arrays.copyOfRange(payload, start, end < 0 ? payload.length : end));
+            offset = end < 0 ? payload.length : end;
+        }
+    }
+
+    /**
+     * Offset following the action starting at the offset, the newline ending its last line included
+     * 
+     * @param buffer
+     *            NDJSON bulk payload, read with absolute offsets
+     * @param offset
+     *            Offset of the metadata line of the action
+     * @param limit
+     *            Offset the payload ends at
+     * @return The end offset, or -1 when the action is not terminated before the limit
+     */
+    public static int actionEnd(ByteBuffer buffer, int offset, int limit) {
+        int metadataEnd = lineEnd(buffer, offset, limit);
+        if (metadataEnd < 0 || isDelete(buffer, offset, metadataEnd)) {
+            return metadataEnd;
+        }
+        return lineEnd(buffer, metadataEnd, limit);
+    }
+
+    /**
+     * @return Offset of the first line at or after the offset that is not blank, or the limit
+     */
+    public static int skipBlankLines(ByteBuffer buffer, int offset, int limit) {
+        while (offset < limit) {
+            int end = lineEnd(buffer, offset, limit);
+            if (end < 0) {
+                end = limit;
+            }
+            if (!isBlank(buffer, offset, end)) {
+                return offset;
+            }
+            offset = end;
+        }
+        return limit;
+    }
+
+    /**
+     * @return Offset following the newline ending the line that starts at the offset, or -1 when the line is not terminated before the limit
+     */
+    private static int lineEnd(ByteBuffer buffer, int offset, int limit) {
+        for (int i = offset; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isBlank(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The action name is the first field name of the metadata line
+     */
+    private static boolean isDelete(ByteBuffer buffer, int from, int to) {
+        int quote = from;
+        while (quote < to && buffer.get(quote) != '"') {
+            quote++;
+        }
+        if (quote + 1 + DELETE.length >= to) {
+            return false;
+        }
+        for (int i = 0; i < DELETE.length; i++) {
+            if (buffer.get(quote + 1 + i) != DELETE[i]) {
+                return false;
+            }
+        }
+        return buffer.get(quote + 1 + DELETE.length) == '"';
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.spool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.mule.extension.elastic.internal.spool.WriteBehindJournal.Batch;
+import org.mule.extension.elastic.internal.spool.WriteBehindJournal.Record;
+import org.mule.extension.elastic.internal.utils.ElasticsearchUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Drains the write-behind journal to the cluster with bulk requests. Requests rejected as a whole (unreachable cluster, 429 or 5xx) and the bulk items rejected
+ *         with 429 are retried with an exponential backoff, so the drain settles at the rate the cluster sustains. The journal checkpoint only moves once every action of a
+ *         batch was either accepted or failed permanently. The journal is polled from the scheduler of the connection draining it, and the drain is started again by
+ *         another connection once that connection is closed.
+ */
+public class WriteBehindDrainer implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindDrainer.class);
+
+    private static final long POLL_INTERVAL = 200;
+    private static final long STOP_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    private static final long MIN_BACKOFF = 100;
+    private static final long MAX_BACKOFF = TimeUnit.SECONDS.toMillis(30);
+
+    private final WriteBehindJournal journal;
+    private final int maxBatchBytes;
+    private final ReentrantLock draining = new ReentrantLock();
+    private RestClient lowLevelClient;
+    private ScheduledFuture<?> task;
+    private final AtomicLong drainedActions = new AtomicLong();
+    private final AtomicLong failedActions = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private volatile boolean running;
+    private volatile String lastError;
+    private long backoff = MIN_BACKOFF;
+
+    public WriteBehindDrainer(WriteBehindJournal journal, int maxBatchBytes) {
+        this.journal = journal;
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * @param lowLevelClient
+     *            Client of the connection draining the journal
+     * @param scheduler
+     *            Scheduler of that connection, polling the journal
+     */
+    public void start(RestClient lowLevelClient, ScheduledExecutorService scheduler) {
+        if (task != null) {
+            task.cancel(false);
+        }
+        this.lowLevelClient = lowLevelClient;
+        running = true;
+        task = scheduler.scheduleWithFixedDelay(this, 0, POLL_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Whether the journal is drained with the client
+     */
+    public boolean isDrainingWith(RestClient lowLevelClient) {
+        return running && this.lowLevelClient == lowLevelClient;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Drain the journal until it is empty
+     */
+    @Override
+    public void run() {
+        draining.lock();
+        try {
+            while (running) {
+                try {
+                    Batch batch = journal.read(maxBatchBytes);
+                    if (batch.getRecords().isEmpty()) {
+                        return;
+                    }
+                    drain(batch.getRecords());
+                    if (running) {
+                        journal.commit(batch);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    lastError = e.getMessage();
+                    logger.error("Write-behind drain failed: " + e.getMessage(), e);
+                    pause();
+                }
+            }
+        } finally {
+            draining.unlock();
+        }
+    }
+
+    /**
+     * Send the records, grouping the consecutive records of the same resource in one bulk request
+     */
+    private void drain(List<Record> records) throws InterruptedException {
+        int start = 0;
+        while (start < records.size() && running) {
+            String resource = records.get(start).getResource();
+            List<byte[]> actions = new ArrayList<>();
+            int end = start;
+            while (end < records.size() && records.get(end).getResource().equals(resource)) {
+                BulkActions.split(records.get(end).getPayload(), actions);
+                end++;
+            }
+            send(resource, actions);
+            start = end;
+        }
+    }
+
+    private void send(String resource, List<byte[]> actions) throws InterruptedException {
+        List<byte[]> pending = actions;
+        while (!pending.isEmpty() && running) {
+            try {
+                Response response = lowLevelClient.performRequest(HttpPost.METHOD_NAME, resource + "/_bulk", Collections.emptyMap(),
+                        new ByteArrayEntity(concat(pending), ContentType.APPLICATION_JSON));
+                pending = rejected(pending, ElasticsearchUtils.responseToMap(response));
+            } catch (ResponseException e) {
+                int status = e.getResponse().getStatusLine().getStatusCode();
+                if (status != 429 && status < 500) {
+                    // the request itself is invalid, sending it again can not succeed
+                    failedActions.addAndGet(pending.size());
+                    lastError = e.getMessage();
+                    logger.error("Write-behind bulk request to " + resource + " failed permanently: " + e.getMessage());
+                    return;
+                }
+                lastError = e.getMessage();
+            } catch (IOException e) {
+                lastError = e.getMessage();
+            }
+
+            if (!pending.isEmpty()) {
+                retries.incrementAndGet();
+                pause();
+            } else {
+                backoff = MIN_BACKOFF;
+            }
+        }
+    }
+
+    /**
+     * @return The actions rejected with 429, to be sent again. The other item failures are counted and logged.
+     */
+    @SuppressWarnings("unchecked")
+    private List<byte[]> rejected(List<byte[]> actions, Map<String, Object> response) {
+        if (!Boolean.TRUE.equals(response.get("errors"))) {
+            drainedActions.addAndGet(actions.size());
+            return Collections.emptyList();
+        }
+        List<byte[]> rejected = new ArrayList<>();
+        List<Object> items = (List<Object>) response.get("items");
+        for (int i = 0; i < items.size(); i++) {
+            Map<String, Object> result = (Map<String, Object>) ((Map<String, Object>) items.get(i)).values().iterator().next();
+            int status = ((Number) result.get("status")).intValue();
+            if (status == 429) {
+                rejected.add(actions.get(i));
+            } else if (result.get("error") != null) {
+                failedActions.incrementAndGet();
+                lastError = String.valueOf(result.get("error"));
+                logger.warn("Write-behind action " + result.get("_index") + "/" + result.get("_id") + " failed: " + result.get("error"));
+            } else {
+                drainedActions.incrementAndGet();
+            }
+        }
+        return rejected;
+    }
+
+    private static byte[] concat(List<byte[]> actions) {
+        int size = 0;
+        for (byte[] action : actions) {
+            size += action.length;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream(size);
+        for (byte[] action : actions) {
+            body.write(action, 0, action.length);
+        }
+        return body.toByteArray();
+    }
+
+    private void pause() {
+        try {
+            synchronized (this) {
+                if (running) {
+                    wait(backoff);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+        backoff = Math.min(MAX_BACKOFF, backoff * 2);
+    }
+
+    public long getDrainedActions() {
+        return drainedActions.get();
+    }
+
+    public long getFailedActions() {
+        return failedActions.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Stop draining. The records not yet drained stay in the journal and are drained once the drain is started again.
+     */
+    public void stop() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        if (task != null) {
+            task.cancel(false);
+        }
+        // wait for the batch being sent, so the journal is not closed under it
+        try {
+            if (draining.tryLock(STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                draining.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,455 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Append only journal of bulk write requests made of memory-mapped segment files. A record is laid out as its length, the CRC32 of its content, the request
+ *         resource and the NDJSON bulk payload. The length slot following a record is zeroed before the record length is written, and the length is written last. A
+ *         record torn by a crash, whose pages were only partly written back, fails its checksum: recovery stops at it and the journal continues from there. A segment that
+ *         has no room left for a record is sealed with a -1 length and the journal continues in a new segment. The drain position is persisted in a checkpoint file and
+ *         the fully drained segments are deleted.
+ */
+public class WriteBehindJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindJournal.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int SEALED = -1;
+    private static final int CORRUPT = -2;
+    private static final int HEADER = 8;
+    private static final Consumer<MappedByteBuffer> UNMAPPER = unmapper();
+
+    /**
+     * Journal position, the segment number and the offset within the segment
+     */
+    public static final class Position {
+
+        private final long segment;
+        private final int offset;
+
+        Position(long segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * A journal record
+     */
+    public static final class Record {
+
+        private final String resource;
+        private final byte[] payload;
+
+        Record(String resource, byte[] payload) {
+            this.resource = resource;
+            this.payload = payload;
+        }
+
+        /**
+         * @return Resource the bulk payload is sent to, index and type path or an empty string
+         */
+        public String getResource() {
+            return resource;
+        }
+
+        /**
+         * @return NDJSON bulk payload
+         */
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    /**
+     * Records read from the journal and the position following them
+     */
+    public static final class Batch {
+
+        private final List<Record> records;
+        private final Position end;
+
+        Batch(List<Record> records, Position end) {
+            this.records = records;
+            this.end = end;
+        }
+
+        public List<Record> getRecords() {
+            return records;
+        }
+
+        public Position getEnd() {
+            return end;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean forceWrites;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    private long readSegment;
+    private int readOffset;
+    private long readBufferSegment = -1;
+    private MappedByteBuffer readBuffer;
+    private long pendingRecords;
+    private boolean closed;
+
+    /**
+     * Open the journal, recovering the records appended but not yet drained
+     * 
+     * @param directory
+     *            Spool directory
+     * @param segmentSize
+     *            Size in bytes of a segment
+     * @param forceWrites
+     *            Force every appended record to the storage device
+     * @throws IOException
+     *             If the journal can not be opened or its spool directory is in use
+     */
+    public WriteBehindJournal(Path directory, int segmentSize, boolean forceWrites) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.forceWrites = forceWrites;
+        this.lockChannel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            this.lock = lockChannel.tryLock();
+            if (lock == null) {
+                throw new IOException("Spool directory " + directory + " is in use by another process");
+            }
+            recover();
+        } catch (OverlappingFileLockException e) {
+            lockChannel.close();
+            throw new IOException("Spool directory " + directory + " is in use by another configuration", e);
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    private void recover() throws IOException {
+        TreeSet<Long> segments = segments();
+        readSegment = segments.isEmpty() ? 1 : segments.first();
+        readOffset = 0;
+
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpoint)) {
+            String[] position = new String(Files.readAllBytes(checkpoint), StandardCharsets.US_ASCII).trim().split(" ");
+            readSegment = Long.parseLong(position[0]);
+            readOffset = Integer.parseInt(position[1]);
+        }
+        for (Long segment : segments.headSet(readSegment)) {
+            Files.deleteIfExists(segmentPath(segment));
+        }
+
+        // verify the records not yet drained, counting them so the status reports the backlog of the previous run
+        long segment = readSegment;
+        int offset = readOffset;
+        MappedByteBuffer buffer = map(segment, segmentSize);
+        int length;
+        while ((length = recordLength(buffer, offset)) != 0) {
+            if (length == SEALED) {
+                unmap(buffer);
+                segment++;
+                offset = 0;
+                buffer = map(segment, segmentSize);
+            } else if (length == CORRUPT) {
+                logger.warn("Write-behind journal record at " + segmentPath(segment) + ":" + offset + " is torn or corrupt, the journal is truncated there");
+                buffer.putInt(offset, 0);
+                break;
+            } else {
+                pendingRecords++;
+                offset += HEADER + length;
+            }
+        }
+        for (Long later : segments.tailSet(segment, false)) {
+            logger.warn("Write-behind journal segment " + segmentPath(later) + " follows a truncated record and is discarded");
+            Files.deleteIfExists(segmentPath(later));
+        }
+        writeSegment = segment;
+        writeBuffer = buffer;
+        writeBuffer.position(offset);
+    }
+
+    /**
+     * @return Length of the record at the offset, 0 at the end of the journal, SEALED at the end of the segment or CORRUPT when the record fails its checksum
+     */
+    private static int recordLength(ByteBuffer buffer, int offset) {
+        if (offset + 4 > buffer.capacity()) {
+            return SEALED;
+        }
+        int length = buffer.getInt(offset);
+        if (length == 0 || length == SEALED) {
+            return length;
+        }
+        if (length < 2 || offset + HEADER + length > buffer.capacity() || buffer.getInt(offset + 4) != checksum(buffer, offset + HEADER, length)) {
+            return CORRUPT;
+        }
+        return length;
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer content = buffer.duplicate();
+        content.limit(offset + length).position(offset);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Append a bulk payload to the journal
+     * 
+     * @param resource
+     *            Index and type path the payload is sent to, or an empty string
+     * @param payload
+     *            NDJSON bulk payload ending with a newline
+     * @throws IOException
+     *             If a new segment can not be created
+     */
+    public synchronized void append(String resource, byte[] payload) throws IOException {
+        if (closed) {
+            throw new IOException("Write-behind journal is closed");
+        }
+        byte[] resourceBytes = resource.getBytes(StandardCharsets.UTF_8);
+        int length = 2 + resourceBytes.length + payload.length;
+        if (writeBuffer.position() + HEADER + length + 4 > writeBuffer.capacity()) {
+            if (writeBuffer.position() + 4 <= writeBuffer.capacity()) {
+                writeBuffer.putInt(writeBuffer.position(), SEALED);
+            }
+            rotate(Math.max(segmentSize, HEADER + length + 4));
+        }
+
+        int offset = writeBuffer.position();
+        writeBuffer.position(offset + HEADER);
+        writeBuffer.putShort((short) resourceBytes.length).put(resourceBytes).put(payload);
+        // stale bytes following the record never read as a record
+        writeBuffer.putInt(writeBuffer.position(), 0);
+        writeBuffer.putInt(offset + 4, checksum(writeBuffer, offset + HEADER, length));
+        writeBuffer.putInt(offset, length);
+        if (forceWrites) {
+            writeBuffer.force();
+        }
+        pendingRecords++;
+    }
+
+    /**
+     * Read the records following the drain checkpoint, without moving it
+     * 
+     * @param maxBytes
+     *            Maximum payload size of the batch. The batch holds at least one record when the journal is not empty.
+     * @return The records and the position following them
+     */
+    public synchronized Batch read(int maxBytes) throws IOException {
+        List<Record> records = new ArrayList<>();
+        long segment = readSegment;
+        int offset = readOffset;
+        int bytes = 0;
+        while (bytes < maxBytes && !closed) {
+            if (segment == writeSegment && offset >= writeBuffer.position()) {
+                break;
+            }
+            MappedByteBuffer buffer = readBuffer(segment);
+            int length = recordLength(buffer, offset);
+            if (length == SEALED) {
+                segment++;
+                offset = 0;
+                continue;
+            }
+            if (length == 0 || length == CORRUPT) {
+                break;
+            }
+            int resourceLength = buffer.getShort(offset + HEADER);
+            byte[] resource = new byte[resourceLength];
+            byte[] payload = new byte[length - 2 - resourceLength];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + HEADER + 2);
+            view.get(resource).get(payload);
+            records.add(new Record(new String(resource, StandardCharsets.UTF_8), payload));
+            bytes += payload.length;
+            offset += HEADER + length;
+        }
+        return new Batch(records, new Position(segment, offset));
+    }
+
+    private MappedByteBuffer readBuffer(long segment) throws IOException {
+        if (segment == writeSegment) {
+            return writeBuffer;
+        }
+        if (segment == readBufferSegment) {
+            return readBuffer;
+        }
+        unmap(readBuffer);
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+            readBuffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+        readBufferSegment = segment;
+        return readBuffer;
+    }
+
+    /**
+     * Move the drain checkpoint after a drained batch and delete the fully drained segments
+     * 
+     * @param batch
+     *            The drained batch
+     * @throws IOException
+     *             If the checkpoint file can not be written
+     */
+    public synchronized void commit(Batch batch) throws IOException {
+        if (closed) {
+            return;
+        }
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.write(temporary, (batch.end.segment + " " + batch.end.offset).getBytes(StandardCharsets.US_ASCII));
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (long segment = readSegment; segment < batch.end.segment; segment++) {
+            if (segment == readBufferSegment) {
+                unmap(readBuffer);
+                readBufferSegment = -1;
+                readBuffer = null;
+            }
+            Files.deleteIfExists(segmentPath(segment));
+        }
+        readSegment = batch.end.segment;
+        readOffset = batch.end.offset;
+        pendingRecords -= batch.records.size();
+    }
+
+    /**
+     * @return Number of appended records not yet drained
+     */
+    public synchronized long getPendingRecords() {
+        return pendingRecords;
+    }
+
+    /**
+     * @return Number of segment files in the spool directory
+     */
+    public synchronized int getSegments() throws IOException {
+        return segments().size();
+    }
+
+    private void rotate(int size) throws IOException {
+        writeBuffer.force();
+        unmap(writeBuffer);
+        writeSegment++;
+        writeBuffer = map(writeSegment, size);
+    }
+
+    private MappedByteBuffer map(long segment, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        }
+    }
+
+    /**
+     * Release the mapping of a buffer no longer used rather than waiting for it to be garbage collected, which keeps the segment file open
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (buffer != null) {
+            UNMAPPER.accept(buffer);
+        }
+    }
+
+    /**
+     * @return The unmapping of the running JVM: Unsafe.invokeCleaner on Java 9 and later, the cleaner of the buffer on Java 8. When neither is available the
+     *         mappings are only released once the buffers are garbage collected.
+     */
+    private static Consumer<MappedByteBuffer> unmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> {
+                try {
+                    invokeCleaner.invoke(unsafe, buffer);
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    // the mapping is released once the buffer is garbage collected
+                }
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return buffer -> {
+                try {
+                    Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                    cleanerMethod.setAccessible(true);
+                    Object cleaner = cleanerMethod.invoke(buffer);
+                    if (cleaner != null) {
+                        cleaner.getClass().getMethod("clean").invoke(cleaner);
+                    }
+                } catch (ReflectiveOperationException | RuntimeException ex) {
+                    // the mapping is released once the buffer is garbage collected
+                }
+            };
+        }
+    }
+
+    private TreeSet<Long> segments() throws IOException {
+        TreeSet<Long> segments = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        return segments;
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writeBuffer.force();
+        unmap(writeBuffer);
+        unmap(readBuffer);
+        writeBuffer = null;
+        readBuffer = null;
+        readBufferSegment = -1;
+        try {
+            lock.release();
+        } finally {
+            lockChannel.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.internal.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.elasticsearch.client.RestClient;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ * 
+ *         Write-behind journal and drainer of a connection configuration, shared by its connections. The journal locks its spool directory, so it is opened once on the
+ *         first use of a write-behind operation rather than by each connection. The journal is drained through one connection at a time: when that connection is closed,
+ *         the next connection using the journal starts the drain again.
+ */
+public class WriteBehindSpool implements Closeable {
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int drainBatchSize;
+    private final boolean forceWrites;
+
+    private WriteBehindJournal journal;
+    private WriteBehindDrainer drainer;
+    private boolean closed;
+
+    /**
+     * @param directory
+     *            Spool directory
+     * @param segmentSize
+     *            Size in bytes of a journal segment
+     * @param drainBatchSize
+     *            Maximum size in bytes of a bulk request sent while draining
+     * @param forceWrites
+     *            Force every appended record to the storage device
+     */
+    public WriteBehindSpool(Path directory, int segmentSize, int drainBatchSize, boolean forceWrites) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.drainBatchSize = drainBatchSize;
+        this.forceWrites = forceWrites;
+    }
+
+    /**
+     * Open the journal on first use and drain it through the connection when no other connection does
+     * 
+     * @param lowLevelClient
+     *            Client of the connection
+     * @param scheduler
+     *            Scheduler of the connection
+     * @return The journal
+     * @throws IOException
+     *             If the journal can not be opened or its spool directory is in use by another application
+     */
+    public synchronized WriteBehindJournal open(RestClient lowLevelClient, ScheduledExecutorService scheduler) throws IOException {
+        if (closed) {
+            throw new IOException("Write-behind spool " + directory + " is closed");
+        }
+        if (journal == null) {
+            journal = new WriteBehindJournal(directory, segmentSize, forceWrites);
+            drainer = new WriteBehindDrainer(journal, drainBatchSize);
+        }
+        if (!drainer.isRunning()) {
+            drainer.start(lowLevelClient, scheduler);
+        }
+        return journal;
+    }
+
+    /**
+     * @return The drainer, or null while the journal was not opened
+     */
+    public synchronized WriteBehindDrainer getDrainer() {
+        return drainer;
+    }
+
+    /**
+     * Stop the drain when it runs through a closing connection. The records not yet drained are drained by the next connection using the journal.
+     * 
+     * @param lowLevelClient
+     *            Client of the closing connection
+     */
+    public synchronized void release(RestClient lowLevelClient) {
+        if (drainer != null && drainer.isDrainingWith(lowLevelClient)) {
+            drainer.stop();
+        }
+    }
+
+    /**
+     * Stop the drain and close the journal, once the configuration is disposed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (journal != null) {
+            drainer.stop();
+            journal.close();
+        }
+    }
+}
@@ -8,10 +8,21 @@ package org.mule.extension.elastic.internal.utils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.http.HttpHeaders;
+import org.apache.http.StatusLine;
 import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.mule.runtime.api.metadata.MediaType;
+import org.mule.runtime.extension.api.runtime.operation.Result;
 
 /**
  * @author Great Software Laboratory Pvt. Ltd.
@@ -31,4 +42,72 @@ public class ElasticsearchUtils {
         return FileUtils.readFileToString(new File(filePath));
     }
 
+    /**
+     * Parse the JSON body of a low level client response
+     * 
+     * @param response
+     *            Low level client response
+     * @return Response body as a map
+     * @throws IOException
+     *             If the body can not be read or parsed
+     */
+    public static Map<String, Object> responseToMap(Response response) throws IOException {
+        try (InputStream content = response.getEntity().getContent()) {
+            return XContentHelper.convertToMap(XContentType.JSON.xContent(), content, false);
+        }
+    }
+
+    /**
+     * Serialize a map to a JSON string
+     * 
+     * @param content
+     *            Map to serialize
+     * @return JSON string
+     * @throws IOException
+     *             If a value can not be serialized
+     */
+    public static String toJson(Map<String, ?> content) throws IOException {
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            return builder.map(content).string();
+        }
+    }
+
+    /**
+     * Build the operation result of a low level client response
+     * 
+     * @param response
+     *            Low level client response
+     * @return Result holding the JSON body and the HTTP status line
+     * @throws IOException
+     *             If the body can not be read
+     */
+    public static Result<String, StatusLine> toResult(Response response) throws IOException {
+        String responseBody = EntityUtils.toString(response.getEntity());
+        return Result.<String, StatusLine>builder()
+                .output(responseBody)
+                .attributes(response.getStatusLine())
+                .length(response.getEntity().getContentLength())
+                .mediaType(MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    /**
+     * Build the operation result of a response body that was parsed or assembled by the connector
+     * 
+     * @param body
+     *            Response body
+     * @param statusLine
+     *            HTTP status line of the response
+     * @return Result holding the JSON body and the HTTP status line
+     * @throws IOException
+     *             If the body can not be serialized
+     */
+    public static Result<String, StatusLine> toResult(Map<String, ?> body, StatusLine statusLine) throws IOException {
+        return Result.<String, StatusLine>builder()
+                .output(toJson(body))
+                .attributes(statusLine)
+                .mediaType(MediaType.APPLICATION_JSON)
+                .build();
+    }
+
 }
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.bulk;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Field;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.extension.elastic.internal.bulk.AdaptiveBulkController;
+import org.mule.extension.elastic.internal.connection.provider.configuration.AdaptiveBulkConfiguration;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ */
+public class AdaptiveBulkControllerTestCase {
+
+    private static final int MIN_BULK_SIZE = 1024;
+    private static final int MAX_BULK_SIZE = 8 * 1024;
+    private static final long TARGET_LATENCY = 60000;
+
+    private AdaptiveBulkConfiguration configuration;
+    private AdaptiveBulkController controller;
+
+    /**
+     * Create a controller starting at the smallest bulk size, with a target latency the test never reaches
+     */
+    @Before
+    public void setup() throws Exception {
+        configuration = new AdaptiveBulkConfiguration();
+        set(configuration, "minBulkSize", MIN_BULK_SIZE / 1024);
+        set(configuration, "maxBulkSize", MAX_BULK_SIZE / 1024);
+        set(configuration, "maxBulkConcurrency", 4);
+        set(configuration, "targetBulkLatency", TARGET_LATENCY);
+        controller = new AdaptiveBulkController(configuration);
+    }
+
+    private static void set(AdaptiveBulkConfiguration configuration, String name, Object value) throws Exception {
+        Field field = AdaptiveBulkConfiguration.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(configuration, value);
+    }
+
+    /**
+     * Test that the bulk size grows by the smallest size on each fast and accepted response, up to the largest size
+     */
+    @Test
+    public void growsAdditivelyOnSuccess() {
+        assertEquals(MIN_BULK_SIZE, controller.getChunkBytes());
+        controller.onResponse(10, 5, 0, 100);
+        assertEquals(2 * MIN_BULK_SIZE, controller.getChunkBytes());
+        controller.onResponse(10, 5, 0, 100);
+        assertEquals(3 * MIN_BULK_SIZE, controller.getChunkBytes());
+
+        for (int i = 0; i < 30; i++) {
+            controller.onResponse(10, 5, 0, 100);
+        }
+        assertEquals(MAX_BULK_SIZE, controller.getChunkBytes());
+        assertEquals(4, controller.getConcurrency());
+    }
+
+    /**
+     * Test that the bulk size and concurrency are halved when items are rejected with 429
+     */
+    @Test
+    public void halvesOnRejectedItems() {
+        for (int i = 0; i < 15; i++) {
+            controller.onResponse(10, 5, 0, 100);
+        }
+        assertEquals(MAX_BULK_SIZE, controller.getChunkBytes());
+        assertEquals(2, controller.getConcurrency());
+
+        controller.onResponse(10, 5, 3, 100);
+        assertEquals(MAX_BULK_SIZE / 2, controller.getChunkBytes());
+        assertEquals(1, controller.getConcurrency());
+
+        // the responses of the requests already in flight do not halve the size again
+        controller.onResponse(10, 5, 3, 100);
+        assertEquals(MAX_BULK_SIZE / 2, controller.getChunkBytes());
+        assertEquals(2L, controller.getStatus().get("rejections"));
+    }
+
+    /**
+     * Test that a slow server took time halves the size, while a slow client latency with a fast took time halves the concurrency first
+     */
+    @Test
+    public void usesTookTimeToChooseTheDecrease() {
+        for (int i = 0; i < 15; i++) {
+            controller.onResponse(10, 5, 0, 100);
+        }
+        assertEquals(MAX_BULK_SIZE, controller.getChunkBytes());
+        assertEquals(2, controller.getConcurrency());
+
+        controller.onResponse(TARGET_LATENCY + 1, 5, 0, 100);
+        assertEquals(MAX_BULK_SIZE, controller.getChunkBytes());
+        assertEquals(1, controller.getConcurrency());
+
+        AdaptiveBulkController slowServer = new AdaptiveBulkController(configuration);
+        for (int i = 0; i < 3; i++) {
+            slowServer.onResponse(10, 5, 0, 100);
+        }
+        slowServer.onResponse(TARGET_LATENCY + 1, TARGET_LATENCY + 1, 0, 100);
+        assertEquals(2 * MIN_BULK_SIZE, slowServer.getChunkBytes());
+    }
+
+    /**
+     * Test that a request rejected as a whole with 429 halves the bulk size, never below the smallest size
+     */
+    @Test
+    public void halvesOnRejectedRequest() {
+        for (int i = 0; i < 3; i++) {
+            controller.onResponse(10, 5, 0, 100);
+        }
+        assertEquals(4 * MIN_BULK_SIZE, controller.getChunkBytes());
+
+        controller.onRejection();
+        assertEquals(2 * MIN_BULK_SIZE, controller.getChunkBytes());
+        assertEquals(1L, controller.getStatus().get("rejections"));
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.mule.extension.elastic.internal.bulk.DocumentStream;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ */
+public class DocumentStreamTestCase {
+
+    /**
+     * Test that the records of a JSON array stream are read one by one
+     */
+    @Test
+    public void readsJsonArrayStream() throws Exception {
+        byte[] json = "[{\"id\":\"1\",\"name\":\"first\"},{\"id\":\"2\",\"tags\":[\"a\",\"b\"]}]".getBytes(StandardCharsets.UTF_8);
+        try (DocumentStream records = new DocumentStream(new ByteArrayInputStream(json))) {
+            assertTrue(records.hasNext());
+            assertEquals("first", records.next().get("name"));
+            assertEquals(Arrays.asList("a", "b"), records.next().get("tags"));
+            assertFalse(records.hasNext());
+        }
+    }
+
+    /**
+     * Test that the records of a collection are read in order
+     */
+    @Test
+    public void readsCollection() throws Exception {
+        try (DocumentStream records = new DocumentStream(Arrays.asList(Collections.singletonMap("id", "1"), Collections.singletonMap("id", "2")))) {
+            assertEquals("1", records.next().get("id"));
+            assertEquals("2", records.next().get("id"));
+            assertFalse(records.hasNext());
+        }
+    }
+
+    /**
+     * Test that a JSON stream that is not an array is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsJsonObjectStream() throws Exception {
+        new DocumentStream(new ByteArrayInputStream("{\"id\":\"1\"}".getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.bulk;
+
+import static org.junit.Assert.assertEquals;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.routing.OperationRouting;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+import org.mule.extension.elastic.internal.bulk.ShardRouter;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ */
+public class ShardRouterTestCase {
+
+    private static final int[][] SHARDS = { { 1, 1 }, { 2, 2 }, { 5, 5 }, { 3, 24 }, { 2, 8 }, { 5, 640 }, { 4, 1024 } };
+
+    /**
+     * Test that the shard of a routing value is the shard the cluster routes it to, for several shard and routing shard counts
+     */
+    @Test
+    public void matchesClusterRouting() {
+        for (int[] shards : SHARDS) {
+            IndexMetaData metaData = IndexMetaData.builder("test")
+                    .settings(Settings.builder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT))
+                    .numberOfShards(shards[0])
+                    .numberOfReplicas(0)
+                    .setRoutingNumShards(shards[1])
+                    .build();
+            for (int i = 0; i < 500; i++) {
+                String routing = "document-" + i;
+                assertEquals("Routing " + routing + " with " + shards[0] + " shards and " + shards[1] + " routing shards",
+                        OperationRouting.generateShardId(metaData, routing, null), ShardRouter.shardId(routing, shards[0], shards[1]));
+            }
+        }
+    }
+}
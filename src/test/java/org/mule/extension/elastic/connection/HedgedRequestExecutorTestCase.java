@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.extension.elastic.internal.connection.HedgedRequestExecutor;
+import org.mule.extension.elastic.internal.connection.provider.configuration.HedgingConfiguration;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ */
+public class HedgedRequestExecutorTestCase {
+
+    private ScheduledExecutorService scheduler;
+    private HedgingConfiguration configuration;
+    private volatile Thread listingThread;
+
+    /**
+     * Hedge after 10 milliseconds, with a budget allowing a hedge for every request
+     */
+    @Before
+    public void setup() throws Exception {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        configuration = new HedgingConfiguration();
+        set(configuration, "hedgeDelayPercentile", 95);
+        set(configuration, "minHedgeDelay", 10L);
+        set(configuration, "hedgeBudget", 100);
+    }
+
+    @After
+    public void teardown() {
+        scheduler.shutdownNow();
+    }
+
+    private static void set(HedgingConfiguration configuration, String name, Object value) throws Exception {
+        Field field = HedgingConfiguration.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(configuration, value);
+    }
+
+    private HedgedRequestExecutor executor(String... nodes) throws Exception {
+        HedgedRequestExecutor executor = new HedgedRequestExecutor(null, configuration, scheduler) {
+
+            @Override
+            protected List<String> fetchDataNodes() {
+                listingThread = Thread.currentThread();
+                return Arrays.asList(nodes);
+            }
+        };
+        // the single threaded scheduler has listed the nodes once this task ran
+        scheduler.submit(() -> {
+        }).get();
+        return executor;
+    }
+
+    /**
+     * Test that a request that does not answer is hedged to another node than the one the original request is pinned to
+     */
+    @Test
+    public void hedgesSlowRequestToAnotherNode() throws Exception {
+        HedgedRequestExecutor executor = executor("node-1", "node-2");
+        List<String> preferences = new CopyOnWriteArrayList<>();
+
+        String response = executor.execute("get", (preference, listener) -> {
+            preferences.add(preference);
+            if (preferences.size() == 2) {
+                listener.onResponse("hedge");
+            }
+            // the original request never answers
+        });
+
+        assertEquals("hedge", response);
+        assertEquals(2, preferences.size());
+        assertNotNull(preferences.get(0));
+        assertNotNull(preferences.get(1));
+        assertNotEquals(preferences.get(0), preferences.get(1));
+        assertNotSame(Thread.currentThread(), listingThread);
+    }
+
+    /**
+     * Test that the original response is used and no hedge is sent when the cluster has a single data node
+     */
+    @Test
+    public void doesNotHedgeWithSingleDataNode() throws Exception {
+        HedgedRequestExecutor executor = executor("node-1");
+        List<String> preferences = new CopyOnWriteArrayList<>();
+
+        String response = executor.execute("get", (preference, listener) -> {
+            preferences.add(preference);
+            scheduler.schedule(() -> listener.onResponse("original"), 50, TimeUnit.MILLISECONDS);
+        });
+
+        assertEquals("original", response);
+        assertEquals(1, preferences.size());
+        assertNull(preferences.get(0));
+    }
+}
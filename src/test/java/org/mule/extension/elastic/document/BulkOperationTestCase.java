@@ -3,8 +3,11 @@
  */
 package org.mule.extension.elastic.document;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Map;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -60,4 +63,90 @@ public class BulkOperationTestCase extends MuleArtifactFunctionalTestCase {
 
     }
 
+    /**
+     * Test that the unchanged documents of a repeated bulk request are skipped, and written again once their index was recreated
+     */
+    @Test
+    public void executeBulkOperationSkipUnchanged() throws Exception {
+        String first = (String) flowRunner("testBulkSkipUnchangedFlow").run().getMessage().getPayload().getValue();
+        assertTrue(first.contains("\"skipped\":0"));
+        assertTrue(first.contains("\"errors\":false"));
+        assertTrue(first.contains("\"created\""));
+
+        String repeated = (String) flowRunner("testBulkSkipUnchangedFlow").run().getMessage().getPayload().getValue();
+        assertTrue(repeated.contains("\"skipped\":2"));
+        assertTrue(repeated.contains("\"items\":[]"));
+
+        flowRunner("testDeleteIndexFlow").run();
+        flowRunner("testCreateIndexFlow").run();
+        String recreated = (String) flowRunner("testBulkSkipUnchangedFlow").run().getMessage().getPayload().getValue();
+        assertTrue(recreated.contains("\"skipped\":0"));
+        assertTrue(recreated.contains("\"created\""));
+    }
+
+    /**
+     * Test the object mode bulk operation
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executeBulkIndexDocumentsOperation() throws Exception {
+        Map<String, Object> summary = (Map<String, Object>) flowRunner("testBulkIndexDocumentsFlow").run().getMessage().getPayload().getValue();
+        assertEquals(2L, summary.get("documents"));
+        assertEquals(0L, summary.get("failed"));
+    }
+
+    /**
+     * Test that a JSON array stream is read record by record and split in several bulk requests
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executeStreamedBulkIndexDocumentsOperation() throws Exception {
+        Map<String, Object> summary = (Map<String, Object>) flowRunner("testStreamedBulkIndexDocumentsFlow").run().getMessage().getPayload().getValue();
+        assertEquals(300L, summary.get("documents"));
+        assertEquals(0L, summary.get("failed"));
+        assertTrue((Long) summary.get("chunks") > 1);
+    }
+
+    /**
+     * Test that the adaptive bulk size grows from the 1 KB smallest size of the configuration while the requests are fast
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executeAdaptiveBulkIndexDocumentsOperation() throws Exception {
+        Map<String, Object> status = (Map<String, Object>) flowRunner("testAdaptiveBulkIndexDocumentsFlow").run().getMessage().getPayload().getValue();
+        assertTrue((Long) status.get("requests") > 1);
+        assertTrue((Integer) status.get("bulkBytes") > 1024);
+    }
+
+    /**
+     * Test the shard-aware bulk routing
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executeShardAwareBulkIndexDocumentsOperation() throws Exception {
+        Map<String, Object> summary = (Map<String, Object>) flowRunner("testShardAwareBulkIndexDocumentsFlow").run().getMessage().getPayload().getValue();
+        assertEquals(100L, summary.get("documents"));
+        assertEquals(0L, summary.get("failed"));
+    }
+
+    /**
+     * Test the chunked upload of a bulk file
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executeBulkUploadFileOperation() throws Exception {
+        Map<String, Object> summary = (Map<String, Object>) flowRunner("testBulkUploadFileFlow").run().getMessage().getPayload().getValue();
+        assertTrue((Long) summary.get("actions") > 0);
+        assertEquals(0L, summary.get("failedChunks"));
+    }
+
+    /**
+     * Test that the ordering lanes apply the writes of a document in order
+     */
+    @Test
+    public void executeOrderedBulkIndexDocumentsOperation() throws Exception {
+        String document = (String) flowRunner("testOrderedBulkIndexDocumentsFlow").run().getMessage().getPayload().getValue();
+        assertTrue(document.contains("\"last\""));
+    }
+
 }
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.functional.junit4.MuleArtifactFunctionalTestCase;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ */
+public class CoalescedWriteOperationTestCase extends MuleArtifactFunctionalTestCase {
+
+    @Override
+    protected String getConfigFile() {
+        return "testElasticsearchOperations.xml";
+    }
+
+    /**
+     * Setup the resources required to run the operation
+     */
+    @Before
+    public void setup() throws Exception {
+        flowRunner("testCreateIndexFlow").run();
+    }
+
+    /**
+     * Remove the resources generated by the operation
+     */
+    @After
+    public void tearDown() throws Exception {
+        flowRunner("testDeleteIndexFlow").run();
+    }
+
+    /**
+     * Test that concurrent partial updates of a document are all applied
+     */
+    @Test
+    public void executeCoalescedWriteOperation() throws Exception {
+        Map<String, Object> before = status();
+        String document = (String) flowRunner("coalescedWriteFlow").run().getMessage().getPayload().getValue();
+        Map<String, Object> after = status();
+
+        assertTrue(document.contains("\"DONE\""));
+        assertTrue(document.contains("\"counter\""));
+        assertEquals(3L, delta(before, after, "receivedWrites"));
+        // the concurrent updates are merged and sent in the same bulk request
+        assertEquals(2L, delta(before, after, "sentWrites"));
+        assertTrue(delta(before, after, "bulkRequests") < delta(before, after, "receivedWrites"));
+    }
+
+    /**
+     * Test that an index followed by a delete of the same document in the window is sent as a single delete
+     */
+    @Test
+    public void executeCoalescedIndexThenDeleteOperation() throws Exception {
+        Map<String, Object> before = status();
+        flowRunner("coalescedIndexThenDeleteFlow").run();
+        Map<String, Object> after = status();
+
+        assertEquals(2L, delta(before, after, "receivedWrites"));
+        assertEquals(1L, delta(before, after, "sentWrites"));
+        assertEquals(1L, delta(before, after, "bulkRequests"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> status() throws Exception {
+        return (Map<String, Object>) flowRunner("coalescedWriteStatusFlow").run().getMessage().getPayload().getValue();
+    }
+
+    private static long delta(Map<String, Object> before, Map<String, Object> after, String counter) {
+        return ((Number) after.get(counter)).longValue() - ((Number) before.get(counter)).longValue();
+    }
+
+}
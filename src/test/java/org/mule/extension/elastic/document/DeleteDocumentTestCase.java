@@ -3,8 +3,10 @@
  */
 package org.mule.extension.elastic.document;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import org.elasticsearch.action.DocWriteResponse;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.junit.After;
 import org.junit.Before;
@@ -63,4 +65,14 @@ public class DeleteDocumentTestCase extends MuleArtifactFunctionalTestCase {
         }
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Test the batched delete
+     */
+    @Test
+    public void executeBatchedDeleteDocumentOperation() throws Exception {
+        DeleteResponse payloadValue = ((DeleteResponse) flowRunner("testBatchedDeleteOperationFlow").run().getMessage().getPayload().getValue());
+        assertEquals("1", payloadValue.getId());
+        assertEquals(DocWriteResponse.Result.DELETED, payloadValue.getResult());
+    }
+}
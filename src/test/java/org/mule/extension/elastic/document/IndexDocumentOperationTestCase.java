@@ -3,6 +3,8 @@
  */
 package org.mule.extension.elastic.document;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.elasticsearch.action.index.IndexResponse;
@@ -80,4 +82,42 @@ public class IndexDocumentOperationTestCase extends MuleArtifactFunctionalTestCa
 
     }
 
-}
\ No newline at end of file
+    /**
+     * Test the indexing of a document without id
+     */
+    @Test
+    public void executeIndexDocumentGeneratedIdOperation() throws Exception {
+        IndexResponse payloadValue = ((IndexResponse) flowRunner("indexDocumentGeneratedIdFlow").run().getMessage().getPayload().getValue());
+        assertTrue(payloadValue.getId() != null && !payloadValue.getId().isEmpty());
+    }
+
+    /**
+     * Test that a retried write with the same idempotency key replaces the document
+     */
+    @Test
+    public void executeIndexDocumentIdempotencyKeyOperation() throws Exception {
+        IndexResponse first = ((IndexResponse) flowRunner("indexDocumentIdempotencyKeyFlow").run().getMessage().getPayload().getValue());
+        IndexResponse retried = ((IndexResponse) flowRunner("indexDocumentIdempotencyKeyFlow").run().getMessage().getPayload().getValue());
+        assertEquals(first.getId(), retried.getId());
+        assertEquals(2L, retried.getVersion());
+    }
+
+    /**
+     * Test that a document indexed waiting for the coordinated refresh is found by a search right after the write
+     */
+    @Test
+    public void executeIndexDocumentAwaitVisibilityOperation() throws Exception {
+        Object count = flowRunner("indexDocumentAwaitVisibilityFlow").run().getMessage().getPayload().getValue();
+        assertEquals(1L, count);
+    }
+
+    /**
+     * Test that a write skipping unchanged documents is sent again once the document was updated by another operation
+     */
+    @Test
+    public void executeIndexDocumentSkipUnchangedAfterUpdateOperation() throws Exception {
+        String document = (String) flowRunner("indexDocumentSkipUnchangedAfterUpdateFlow").run().getMessage().getPayload().getValue();
+        assertTrue(document.contains("\"first\""));
+        assertFalse(document.contains("\"second\""));
+    }
+}
@@ -3,8 +3,10 @@
  */
 package org.mule.extension.elastic.document;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import org.elasticsearch.action.DocWriteResponse;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.junit.After;
 import org.junit.Before;
@@ -82,4 +84,31 @@ public class UpdateDocumentTestCase extends MuleArtifactFunctionalTestCase {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Test that a delta update without changes is skipped
+     */
+    @Test
+    public void executeDeltaUpdateOperation() throws Exception {
+        UpdateResponse payloadValue = ((UpdateResponse) flowRunner("testDeltaUpdateFlow").run().getMessage().getPayload().getValue());
+        assertTrue(payloadValue.getResult() == DocWriteResponse.Result.NOOP);
+    }
+
+    /**
+     * Test that a delta update matching a cached source changed since by a plain update is still sent
+     */
+    @Test
+    public void executeDeltaUpdateAfterUpdateOperation() throws Exception {
+        UpdateResponse payloadValue = ((UpdateResponse) flowRunner("testDeltaUpdateAfterUpdateFlow").run().getMessage().getPayload().getValue());
+        assertEquals(DocWriteResponse.Result.UPDATED, payloadValue.getResult());
+    }
+
+    /**
+     * Test the update with a stored script
+     */
+    @Test
+    public void executeScriptedUpdateOperation() throws Exception {
+        UpdateResponse payloadValue = ((UpdateResponse) flowRunner("testScriptedUpdateFlow").run().getMessage().getPayload().getValue());
+        assertTrue(payloadValue.getResult() == DocWriteResponse.Result.UPDATED);
+    }
+
+}
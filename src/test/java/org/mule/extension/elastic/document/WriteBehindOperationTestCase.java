@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.functional.junit4.MuleArtifactFunctionalTestCase;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ */
+public class WriteBehindOperationTestCase extends MuleArtifactFunctionalTestCase {
+
+    @Override
+    protected String getConfigFile() {
+        return "testElasticsearchOperations.xml";
+    }
+
+    /**
+     * Setup the resources required to run the operation
+     */
+    @Before
+    public void setup() throws Exception {
+        flowRunner("testCreateIndexFlow").run();
+    }
+
+    /**
+     * Remove the resources generated by the operation
+     */
+    @After
+    public void tearDown() throws Exception {
+        flowRunner("testDeleteIndexFlow").run();
+    }
+
+    /**
+     * Test that a spooled document is drained to the cluster
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executeIndexDocumentWriteBehindOperation() throws Exception {
+        flowRunner("indexDocumentWriteBehindFlow").run();
+
+        Map<String, Object> status;
+        long deadline = System.currentTimeMillis() + 10000;
+        do {
+            Thread.sleep(100);
+            status = (Map<String, Object>) flowRunner("writeBehindStatusFlow").run().getMessage().getPayload().getValue();
+        } while ((Long) status.get("pendingRequests") > 0 && System.currentTimeMillis() < deadline);
+
+        assertEquals(0L, status.get("pendingRequests"));
+        assertEquals(0L, status.get("failedActions"));
+        assertTrue((Long) status.get("drainedActions") > 0);
+
+        String document = (String) flowRunner("getWriteBehindDocumentFlow").run().getMessage().getPayload().getValue();
+        assertTrue(document.contains("\"testUser\""));
+    }
+
+}
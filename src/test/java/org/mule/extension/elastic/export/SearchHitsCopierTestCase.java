@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.export;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mule.extension.elastic.internal.export.NdjsonFileWriter;
+import org.mule.extension.elastic.internal.export.SearchHitsCopier;
+import org.mule.extension.elastic.internal.export.SearchHitsCopier.Page;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ */
+public class SearchHitsCopierTestCase {
+
+    private static final String FIRST_HIT = "{\"_id\":\"1\",\"_source\":{\"name\":\"caf\u00e9\",\"tags\":[\"a\",\"}\"]},\"sort\":[10,\"a\"]}";
+    private static final String SECOND_HIT = "{\"_id\":\"2\",\"_source\":{\"name\":\"second\"},\"sort\":[20,\"b\"]}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that the hits are written as the bytes of the body they span, and that the sort values of the last hit are read
+     */
+    @Test
+    public void copiesRawHits() throws Exception {
+        String body = "{\"_scroll_id\":\"scroll-1\",\"hits\":{\"hits\":[" + FIRST_HIT + "," + SECOND_HIT + "]}}";
+        Path file = folder.getRoot().toPath().resolve("hits.ndjson");
+
+        Page page;
+        try (NdjsonFileWriter writer = new NdjsonFileWriter(file, false)) {
+            page = new SearchHitsCopier().copy(body.getBytes(StandardCharsets.UTF_8), writer);
+        }
+
+        assertEquals(2, page.getHits());
+        assertEquals("scroll-1", page.getScrollId());
+        assertEquals(Arrays.asList(20, "b"), page.getLastSort());
+        assertEquals(Arrays.asList(FIRST_HIT, SECOND_HIT), Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+}
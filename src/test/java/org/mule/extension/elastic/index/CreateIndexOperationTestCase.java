@@ -3,8 +3,11 @@
  */
 package org.mule.extension.elastic.index;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Map;
+
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.junit.After;
 import org.junit.Test;
@@ -48,4 +51,29 @@ public class CreateIndexOperationTestCase extends MuleArtifactFunctionalTestCase
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Test the creation of an index in bulk load mode and the restore of the settings it was created with
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executeBulkLoadIndexOperation() throws Exception {
+        Map<String, Object> payloadValue = (Map<String, Object>) flowRunner("testBulkLoadIndexFlow").run().getMessage().getPayload().getValue();
+        Map<String, Object> restoredSettings = (Map<String, Object>) payloadValue.get("restoredSettings");
+        assertEquals("green", payloadValue.get("status"));
+        assertEquals("0", restoredSettings.get("index.number_of_replicas"));
+        assertEquals("5s", restoredSettings.get("index.refresh_interval"));
+        assertEquals("request", restoredSettings.get("index.translog.durability"));
+    }
+
+    /**
+     * Test that finishing the load restores the translog durability the index was created with when the load kept it
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executeBulkLoadKeepsTranslogDurabilityOperation() throws Exception {
+        Map<String, Object> payloadValue = (Map<String, Object>) flowRunner("testBulkLoadAsyncIndexFlow").run().getMessage().getPayload().getValue();
+        Map<String, Object> restoredSettings = (Map<String, Object>) payloadValue.get("restoredSettings");
+        assertEquals("async", restoredSettings.get("index.translog.durability"));
+    }
+}
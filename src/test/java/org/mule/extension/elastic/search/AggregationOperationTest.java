@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.functional.junit4.MuleArtifactFunctionalTestCase;
+import org.mule.runtime.api.streaming.object.CursorIteratorProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class AggregationOperationTest extends MuleArtifactFunctionalTestCase {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AggregationOperationTest.class);
+
+    // documents and distinct states of the sample data, the flow pages the states 10 at a time
+    private static final int DOCUMENT_COUNT = 1000;
+    private static final int STATE_COUNT = 51;
+
+    @Override
+    protected String getConfigFile() {
+        return "search-operation-test.xml";
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        flowRunner("setUpFlow").run();
+    }
+
+    @Test
+    public void executeSearchWithAggregationsOperation() throws Exception {
+        SearchResponse payloadValue = ((SearchResponse) flowRunner("testSearchAggregationsFlow").run().getMessage().getPayload().getValue());
+        LOGGER.info(payloadValue.toString());
+
+        assertNotNull(payloadValue.getAggregations());
+    }
+
+    @Test
+    public void executeCompositeAggregationOperation() throws Exception {
+        // the set up does not refresh the index, wait for every document to be aggregated
+        List<Map<String, Object>> buckets = compositeBuckets();
+        for (int attempt = 0; attempt < 50 && documentCount(buckets) < DOCUMENT_COUNT; attempt++) {
+            Thread.sleep(200);
+            buckets = compositeBuckets();
+        }
+        LOGGER.info(buckets.toString());
+
+        assertEquals(DOCUMENT_COUNT, documentCount(buckets));
+        assertEquals(STATE_COUNT, buckets.size());
+        // every page starts after the key of the previous one, a repeated or skipped page breaks the order
+        for (int i = 1; i < buckets.size(); i++) {
+            assertTrue(state(buckets.get(i - 1)).compareTo(state(buckets.get(i))) < 0);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> compositeBuckets() throws Exception {
+        Object payloadValue = flowRunner("testCompositeAggregationFlow").run().getMessage().getPayload().getValue();
+        Iterator<Map<String, Object>> iterator = payloadValue instanceof CursorIteratorProvider ? ((CursorIteratorProvider) payloadValue).openCursor()
+                : (Iterator<Map<String, Object>>) payloadValue;
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        iterator.forEachRemaining(buckets::add);
+        return buckets;
+    }
+
+    private static int documentCount(List<Map<String, Object>> buckets) {
+        return buckets.stream().mapToInt(bucket -> ((Number) bucket.get("doc_count")).intValue()).sum();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String state(Map<String, Object> bucket) {
+        return (String) ((Map<String, Object>) bucket.get("key")).get("state");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        flowRunner("tearDownFlow").run();
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.search;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.functional.junit4.MuleArtifactFunctionalTestCase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ByQueryOperationTest extends MuleArtifactFunctionalTestCase {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ByQueryOperationTest.class);
+
+    @Override
+    protected String getConfigFile() {
+        return "search-operation-test.xml";
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        flowRunner("setUpFlow").run();
+    }
+
+    @Test
+    public void executeUpdateByQueryOperation() throws Exception {
+        String payloadValue = (String) flowRunner("testUpdateByQueryFlow").run().getMessage().getPayload().getValue();
+        LOGGER.info(payloadValue);
+
+        assertTrue(payloadValue.contains("\"completed\":true"));
+    }
+
+    @Test
+    public void executeDeleteByQueryOperation() throws Exception {
+        String payloadValue = (String) flowRunner("testDeleteByQueryFlow").run().getMessage().getPayload().getValue();
+        LOGGER.info(payloadValue);
+
+        assertTrue(payloadValue.contains("\"completed\":true"));
+    }
+
+    @Test
+    public void executeReindexOperation() throws Exception {
+        String payloadValue = (String) flowRunner("testReindexFlow").run().getMessage().getPayload().getValue();
+        LOGGER.info(payloadValue);
+
+        assertTrue(payloadValue.contains("\"completed\":true"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        flowRunner("tearDownFlow").run();
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.search;
+
+import static org.junit.Assert.assertNotNull;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.functional.junit4.MuleArtifactFunctionalTestCase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ExportOperationTest extends MuleArtifactFunctionalTestCase {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExportOperationTest.class);
+
+    @Override
+    protected String getConfigFile() {
+        return "search-operation-test.xml";
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        flowRunner("setUpFlow").run();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executeExportToFileOperation() throws Exception {
+        Map<String, Object> payloadValue = (Map<String, Object>) flowRunner("testExportToFileFlow").run().getMessage().getPayload().getValue();
+        LOGGER.info(payloadValue.toString());
+
+        assertNotNull(payloadValue.get("documents"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executeResumableExportToFileOperation() throws Exception {
+        Map<String, Object> payloadValue = (Map<String, Object>) flowRunner("testResumableExportToFileFlow").run().getMessage().getPayload().getValue();
+        LOGGER.info(payloadValue.toString());
+
+        assertNotNull(payloadValue.get("documents"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        flowRunner("tearDownFlow").run();
+    }
+}
@@ -3,10 +3,21 @@
  */
 package org.mule.extension.elastic.search;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
 
 import org.elasticsearch.action.search.ClearScrollResponse;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.SearchHit;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -18,6 +29,9 @@ public class SearchOperationTest extends MuleArtifactFunctionalTestCase {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SearchOperationTest.class);
 
+    // lastnames of the sample data matching searchMatch.searchString
+    private static final long MATCH_COUNT = 3;
+
     @Override
     protected String getConfigFile() {
         return "search-operation-test.xml";
@@ -35,6 +49,74 @@ public class SearchOperationTest extends MuleArtifactFunctionalTestCase {
         assertNotNull(payloadValue);
     }
 
+    @Test
+    public void executeHedgedSearchOperation() throws Exception {
+        SearchResponse payloadValue = ((SearchResponse) flowRunner("testHedgedSearchFlow").run().getMessage().getPayload().getValue());
+        LOGGER.info(payloadValue.toString());
+
+        assertNotNull(payloadValue);
+    }
+
+    @Test
+    public void executeCountOperation() throws Exception {
+        // the set up does not refresh the index, wait for the documents to become searchable
+        Long payloadValue = ((Long) flowRunner("testCountFlow").run().getMessage().getPayload().getValue());
+        for (int attempt = 0; attempt < 50 && payloadValue < MATCH_COUNT; attempt++) {
+            Thread.sleep(200);
+            payloadValue = ((Long) flowRunner("testCountFlow").run().getMessage().getPayload().getValue());
+        }
+        LOGGER.info(payloadValue.toString());
+
+        assertEquals(Long.valueOf(MATCH_COUNT), payloadValue);
+    }
+
+    @Test
+    public void executeExistsOperation() throws Exception {
+        Boolean payloadValue = ((Boolean) flowRunner("testExistsFlow").run().getMessage().getPayload().getValue());
+        for (int attempt = 0; attempt < 50 && !payloadValue; attempt++) {
+            Thread.sleep(200);
+            payloadValue = ((Boolean) flowRunner("testExistsFlow").run().getMessage().getPayload().getValue());
+        }
+        LOGGER.info(payloadValue.toString());
+
+        assertTrue(payloadValue);
+        assertFalse((Boolean) flowRunner("testExistsNoMatchFlow").run().getMessage().getPayload().getValue());
+    }
+
+    @Test
+    public void executeDocValuesSearchOperation() throws Exception {
+        SearchResponse payloadValue = searchHits("testDocValuesSearchFlow");
+        LOGGER.info(payloadValue.toString());
+
+        for (SearchHit hit : payloadValue.getHits()) {
+            assertNull(hit.getSourceAsString());
+            assertTrue(hit.getFields().containsKey("account_number"));
+            assertTrue(hit.getFields().containsKey("balance"));
+        }
+    }
+
+    @Test
+    public void executeStoredFieldsSearchOperation() throws Exception {
+        SearchResponse payloadValue = searchHits("testStoredFieldsSearchFlow");
+        LOGGER.info(payloadValue.toString());
+
+        for (SearchHit hit : payloadValue.getHits()) {
+            assertNull(hit.getSourceAsString());
+            assertNotNull(hit.getId());
+        }
+    }
+
+    private SearchResponse searchHits(String flowName) throws Exception {
+        // the set up does not refresh the index, wait for hits so the loops above assert something
+        SearchResponse payloadValue = (SearchResponse) flowRunner(flowName).run().getMessage().getPayload().getValue();
+        for (int attempt = 0; attempt < 50 && payloadValue.getHits().getHits().length == 0; attempt++) {
+            Thread.sleep(200);
+            payloadValue = (SearchResponse) flowRunner(flowName).run().getMessage().getPayload().getValue();
+        }
+        assertTrue(payloadValue.getHits().getHits().length > 0);
+        return payloadValue;
+    }
+
     @Test
     public void executeSearchMatchOperation() throws Exception {
         SearchResponse payloadValue = ((SearchResponse) flowRunner("testSearchMatchFlow").run().getMessage().getPayload().getValue());
@@ -99,6 +181,14 @@ public class SearchOperationTest extends MuleArtifactFunctionalTestCase {
         assertNotNull(payloadValue);
     }
 
+    @Test
+    public void executSearchTemplateOperation() throws Exception {
+        String payloadValue = ((String) flowRunner("testSearchTemplateFlow").run().getMessage().getPayload().getValue());
+        LOGGER.info(payloadValue);
+
+        assertNotNull(payloadValue);
+    }
+
     @Test
     public void executSearchScrollInitOperation() throws Exception {
         SearchResponse payloadValue = ((SearchResponse) flowRunner("testSearchScrollInitFlow").run().getMessage().getPayload().getValue());
@@ -184,6 +274,25 @@ public class SearchOperationTest extends MuleArtifactFunctionalTestCase {
         assertNotNull(payloadValue);
     }
 
+    @Test
+    public void executeSlowQueryLogOperation() throws Exception {
+        Path logFile = Paths.get("target/slow-query.log");
+        Files.deleteIfExists(logFile);
+
+        SearchResponse payloadValue = (SearchResponse) flowRunner("testSlowQueryLogFlow").run().getMessage().getPayload().getValue();
+        // the search of the flow is not profiled, a copy of it is
+        assertTrue(payloadValue.getProfileResults().isEmpty());
+
+        List<String> entries = Collections.emptyList();
+        for (int attempt = 0; attempt < 50 && entries.stream().noneMatch(entry -> entry.contains("\"type\":\"profile\"")); attempt++) {
+            Thread.sleep(200);
+            entries = Files.exists(logFile) ? Files.readAllLines(logFile) : Collections.emptyList();
+        }
+        LOGGER.info(entries.toString());
+        assertTrue(entries.stream().anyMatch(entry -> entry.contains("\"type\":\"slow_query\"")));
+        assertTrue(entries.stream().anyMatch(entry -> entry.contains("\"type\":\"profile\"") && entry.contains("\"shards\"")));
+    }
+
     @After
     public void tearDown() throws Exception {
         flowRunner("tearDownFlow").run();
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2003-2017, Great Software Laboratory Pvt. Ltd. The software in this package is published under the terms of the Commercial Free Software license V.1, a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.elastic.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.mule.extension.elastic.internal.source.SortWatermark;
+
+/**
+ * @author Great Software Laboratory Pvt. Ltd.
+ *
+ */
+public class SortWatermarkTestCase {
+
+    private static SortWatermark watermark(Object... sortValues) {
+        return new SortWatermark(sortValues);
+    }
+
+    /**
+     * Test that integer and long sort values compare by value, and are equal with the same hash when their value is the same
+     */
+    @Test
+    public void comparesMixedIntegerAndLongValues() {
+        assertEquals(0, watermark(5, "a").compareTo(watermark(5L, "a")));
+        assertEquals(watermark(5, "a"), watermark(5L, "a"));
+        assertEquals(watermark(5, "a").hashCode(), watermark(5L, "a").hashCode());
+
+        assertTrue(watermark(4, "z").compareTo(watermark(5L, "a")) < 0);
+        assertTrue(watermark(Long.MAX_VALUE, "a").compareTo(watermark(Long.MAX_VALUE - 1, "a")) > 0);
+        assertEquals(0, watermark(5L).compareTo(watermark(5.0d)));
+        assertEquals(watermark(5L).hashCode(), watermark(5.0d).hashCode());
+    }
+
+    /**
+     * Test that the tie breaker orders the watermarks sharing a watermark value
+     */
+    @Test
+    public void comparesTieBreaker() {
+        assertTrue(watermark(5L, "a").compareTo(watermark(5L, "b")) < 0);
+        assertTrue(watermark(5L, "b").compareTo(watermark(5L, "a")) > 0);
+        assertNotEquals(watermark(5L, "a"), watermark(5L, "b"));
+    }
+
+    /**
+     * Test that a missing sort value sorts first
+     */
+    @Test
+    public void comparesNullValues() {
+        assertTrue(watermark(null, "a").compareTo(watermark(1L, "a")) < 0);
+        assertTrue(watermark(1L, "a").compareTo(watermark(null, "a")) > 0);
+        assertEquals(0, watermark(null, "a").compareTo(watermark(null, "a")));
+        assertEquals(watermark(null, "a").hashCode(), watermark(null, "a").hashCode());
+    }
+
+    /**
+     * Test that a watermark with fewer sort values sorts before the longer watermark sharing its values
+     */
+    @Test
+    public void comparesLengthOnTie() {
+        assertTrue(watermark(5L).compareTo(watermark(5L, "a")) < 0);
+        assertTrue(watermark(5L, "a").compareTo(watermark(5L)) > 0);
+        assertTrue(watermark(6L).compareTo(watermark(5L, "a")) > 0);
+        assertNotEquals(watermark(5L), watermark(5L, "a"));
+    }
+}